@@ -0,0 +1,107 @@
+package sortbench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Benchmarks every SortEngine algorithm against Arrays.sort over sizes from 16 to 10M and several input
+// distributions. Each invocation sorts a fresh copy of the same input; the copy is part of every measurement,
+// including the Arrays.sort baseline.
+//
+// Combinations that are quadratic (Bubble, Selection and Insertion Sort, and the Lomuto Quick Sort on
+// non-random input) are refused above QUADRATIC_LIMIT elements; JMH reports them as failed and moves on.
+// Narrow the sweep from the command line, e.g. java -jar target/benchmarks.jar -p algorithm="Merge Sort" -p size=1048576
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SortBenchmark {
+
+    static final String BASELINE = "Arrays.sort";
+    static final int QUADRATIC_LIMIT = 65536;
+
+    // The engine lives in the unnamed package of the application sources, which named packages cannot import
+    private static final MethodHandle NEW_ENGINE;
+    private static final MethodHandle SORT;
+    private static final MethodHandle GENERATE;
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> engine = Class.forName("SortEngine");
+            NEW_ENGINE = lookup.findConstructor(engine, MethodType.methodType(void.class))
+                .asType(MethodType.methodType(Object.class));
+            SORT = lookup.findVirtual(engine, "sort", MethodType.methodType(void.class, String.class, int[].class))
+                .asType(MethodType.methodType(void.class, Object.class, String.class, int[].class));
+            GENERATE = lookup.findStatic(Class.forName("InputGenerator"), "generate",
+                MethodType.methodType(int[].class, String.class, int.class, int.class, long.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Param({BASELINE, "Bubble Sort", "Selection Sort", "Insertion Sort", "Shell Sort", "Merge Sort", "TimSort", "Quick Sort",
+        "Dual-Pivot Quick Sort", "Intro Sort", "Heap Sort", "Parallel Merge Sort", "External Merge Sort",
+        "LSD Radix Sort", "MSD Radix Sort", "Counting Sort"})
+    public String algorithm;
+
+    @Param({"uniform", "sorted", "reversed", "nearly-sorted", "few-unique", "organ-pipe", "sawtooth", "zipf", "gaussian"})
+    public String distribution;
+
+    @Param({"16", "256", "4096", "65536", "1048576", "10000000"})
+    public int size;
+
+    private int[] input;
+    private int[] work;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        if (size > QUADRATIC_LIMIT && isQuadratic()) {
+            throw new IllegalStateException("Skipped: " + algorithm + " is quadratic on " + distribution
+                + " input of " + size + " elements");
+        }
+        input = (int[]) GENERATE.invokeExact(distribution, size, Integer.MAX_VALUE, 42L);
+        work = new int[size];
+    }
+
+    private boolean isQuadratic() {
+        switch (algorithm) {
+            case "Bubble Sort":
+            case "Selection Sort":
+            case "Insertion Sort":
+                return true;
+            case "Quick Sort":
+                return !"uniform".equals(distribution) && !"gaussian".equals(distribution);
+            default:
+                return false;
+        }
+    }
+
+    @Benchmark
+    public int[] sort() throws Throwable {
+        System.arraycopy(input, 0, work, 0, size);
+        if (BASELINE.equals(algorithm)) {
+            Arrays.sort(work);
+        } else {
+            Object engine = (Object) NEW_ENGINE.invokeExact();
+            SORT.invokeExact(engine, algorithm, work);
+        }
+        return work;
+    }
+}
@@ -0,0 +1,37 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+// All sorting algorithms on the class path, in the order their providers are listed. Nothing is loaded
+// until the registry is first used; after that lookups are plain map reads and safe from any thread.
+public final class AlgorithmRegistry {
+
+    private AlgorithmRegistry() {
+    }
+
+    // Initialized by the JVM on first access to Holder, which also makes it thread-safe
+    private static class Holder {
+        private static final Map<String, SortAlgorithm> ALGORITHMS = load();
+    }
+
+    private static Map<String, SortAlgorithm> load() {
+        Map<String, SortAlgorithm> algorithms = new LinkedHashMap<>();
+        for (SortAlgorithm algorithm : ServiceLoader.load(SortAlgorithm.class)) {
+            // The first provider of a name wins, so a plugin cannot silently replace a built-in algorithm
+            algorithms.putIfAbsent(algorithm.getName(), algorithm);
+        }
+        return Collections.unmodifiableMap(algorithms);
+    }
+
+    public static List<String> names() {
+        return new ArrayList<>(Holder.ALGORITHMS.keySet());
+    }
+
+    // The algorithm with this name, or null if there is none
+    public static SortAlgorithm get(String name) {
+        return Holder.ALGORITHMS.get(name);
+    }
+}
@@ -0,0 +1,255 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+
+// Loads arrays of ints from files through read-only memory-mapped windows, without creating an object per
+// value. Files ending in one of RAW_EXTENSIONS hold raw little-endian int32 values; anything else is text
+// with the values separated by commas, semicolons, whitespace or line breaks, so CSV columns and one value
+// per line both work. A first line that does not start with a number is taken for a header and skipped;
+// fractional digits are dropped. Text is parsed twice, first only counting the values, so the array is
+// allocated once at its exact length instead of being grown and copied. save() writes either format back.
+public class ArrayFile {
+
+    public static final String[] RAW_EXTENSIONS = {".bin", ".i32", ".raw"};
+
+    // Mapped at a time; a multiple of 4 so raw values never straddle two windows
+    private static final long WINDOW_SIZE = 1L << 24;
+    private static final int MAX_LENGTH = Integer.MAX_VALUE - 8;
+    // Writes go through one buffer of this size, so saving never copies the whole array
+    private static final int WRITE_BUFFER = 1 << 20;
+    // Longest value in text: sign, ten digits and the line break
+    private static final int MAX_TEXT_BYTES = 12;
+
+    // Told how many bytes have been read so far, after every window
+    public interface Progress {
+        void update(long done, long total);
+    }
+
+    private ArrayFile() {
+    }
+
+    public static boolean isRaw(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        for (String extension : RAW_EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Throws CancellationException when the thread is interrupted, so a load can be abandoned
+    public static int[] load(Path path, Progress progress) throws IOException {
+        return isRaw(path) ? loadRaw(path, progress) : loadText(path, progress);
+    }
+
+    public static int[] loadRaw(Path path, Progress progress) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size % 4 != 0) {
+                throw new IOException(path.getFileName() + " is not a whole number of int32 values (" + size + " bytes)");
+            }
+            if (size / 4 > MAX_LENGTH) {
+                throw new IOException(path.getFileName() + " holds more values than an array can");
+            }
+            int[] values = new int[(int) (size / 4)];
+            for (long start = 0; start < size; start += WINDOW_SIZE) {
+                checkInterrupted();
+                long length = Math.min(WINDOW_SIZE, size - start);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                IntBuffer ints = window.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+                ints.get(values, (int) (start / 4), ints.remaining());
+                progress.update(start + length, size);
+            }
+            return values;
+        }
+    }
+
+    // Progress runs over both passes, so it reaches twice the file size
+    public static int[] loadText(Path path, Progress progress) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            TextParser counter = new TextParser(null);
+            parseWindows(channel, counter, 0, progress);
+            TextParser parser = new TextParser(new int[counter.finish(size)]);
+            parseWindows(channel, parser, size, progress);
+            parser.finish(size);
+            return parser.values;
+        }
+    }
+
+    private static void parseWindows(FileChannel channel, TextParser parser, long done, Progress progress)
+            throws IOException {
+        long size = channel.size();
+        for (long start = 0; start < size; start += WINDOW_SIZE) {
+            checkInterrupted();
+            long length = Math.min(WINDOW_SIZE, size - start);
+            parser.parse(channel.map(FileChannel.MapMode.READ_ONLY, start, length), start);
+            progress.update(done + start + length, 2 * size);
+        }
+    }
+
+    // Writes values as raw int32 or, for other file names, as text with one value per line. Progress counts
+    // values instead of bytes.
+    public static void save(Path path, int[] values, Progress progress) throws IOException {
+        boolean raw = isRaw(path);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] digits = new byte[MAX_TEXT_BYTES];
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int i = 0; i < values.length; i++) {
+                if (buffer.remaining() < MAX_TEXT_BYTES) {
+                    checkInterrupted();
+                    drain(channel, buffer);
+                    progress.update(i, values.length);
+                }
+                if (raw) {
+                    buffer.putInt(values[i]);
+                } else {
+                    putLine(buffer, values[i], digits);
+                }
+            }
+            drain(channel, buffer);
+            progress.update(values.length, values.length);
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Decimal digits of value and a line break, without going through a String
+    private static void putLine(ByteBuffer buffer, int value, byte[] digits) {
+        long rest = value;
+        if (rest < 0) {
+            buffer.put((byte) '-');
+            rest = -rest;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest > 0);
+        while (count > 0) {
+            buffer.put(digits[--count]);
+        }
+        buffer.put((byte) '\n');
+    }
+
+    // Parses the same text format from a string, e.g. typed values
+    public static int[] parse(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        TextParser counter = new TextParser(null);
+        counter.parse(ByteBuffer.wrap(bytes), 0);
+        TextParser parser = new TextParser(new int[counter.finish(bytes.length)]);
+        parser.parse(ByteBuffer.wrap(bytes), 0);
+        parser.finish(bytes.length);
+        return parser.values;
+    }
+
+    private static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+
+    // Digit-by-digit parser whose state carries over from one window to the next. Without an array it only
+    // counts the values; with one it stores them, and the array must have room for all.
+    private static class TextParser {
+        private final int[] values;
+        private int count = 0;
+        private long value = 0;
+        private boolean negative = false;
+        private boolean inNumber = false;
+        private boolean hasDigits = false;
+        private boolean inFraction = false;
+        // Before the first value: whether the first line is still being looked at, and whether it is a header
+        private boolean firstLine = true;
+        private boolean header = false;
+
+        TextParser(int[] values) {
+            this.values = values;
+        }
+
+        void parse(ByteBuffer bytes, long offset) throws IOException {
+            int limit = bytes.limit();
+            for (int k = bytes.position(); k < limit; k++) {
+                byte b = bytes.get(k);
+                if (header) {
+                    if (b == '\n') {
+                        header = false;
+                        firstLine = false;
+                    }
+                    continue;
+                }
+                if (b >= '0' && b <= '9') {
+                    firstLine = false;
+                    if (!inFraction) {
+                        value = value * 10 + (b - '0');
+                        if (value > (negative ? 1L << 31 : Integer.MAX_VALUE)) {
+                            throw new IOException("Value out of int range at byte " + (offset + k));
+                        }
+                    }
+                    inNumber = true;
+                    hasDigits = true;
+                } else if (b == '-' || b == '+') {
+                    if (inNumber) {
+                        throw new IOException("Unexpected '" + (char) b + "' at byte " + (offset + k));
+                    }
+                    firstLine = false;
+                    negative = b == '-';
+                    inNumber = true;
+                } else if (b == '.' && hasDigits) {
+                    inFraction = true;
+                } else if (b == ',' || b == ';' || b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                    end(offset + k);
+                    if (b == '\n') {
+                        firstLine = false;
+                    }
+                } else if (firstLine && !inNumber) {
+                    header = true;
+                } else {
+                    throw new IOException("Unexpected '" + (char) (b & 0xFF) + "' at byte " + (offset + k));
+                }
+            }
+        }
+
+        private void end(long position) throws IOException {
+            if (!inNumber) {
+                return;
+            }
+            if (!hasDigits) {
+                throw new IOException("Sign without digits before byte " + position);
+            }
+            if (count == MAX_LENGTH) {
+                throw new IOException("More values than an array can hold");
+            }
+            if (values != null) {
+                values[count] = (int) (negative ? -value : value);
+            }
+            count++;
+            value = 0;
+            negative = false;
+            inNumber = false;
+            hasDigits = false;
+            inFraction = false;
+        }
+
+        // Number of values found
+        int finish(long size) throws IOException {
+            end(size);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+// Values and display state of every bar, plus the set of indices that changed since the last frame.
+// Views only redraw the dirty indices, so the cost of a frame is proportional to what actually changed.
+public class BarState {
+
+    private final int[] values;
+    private final byte[] states;
+    private final boolean[] isDirty;
+    private final int[] dirty;
+    private int dirtyCount = 0;
+    private int highlightA = -1;
+    private int highlightB = -1;
+    private int maxValue = 1;
+    // Never above 0, so bars grow from 0 unless there are negative values to fit below it
+    private int minValue = 0;
+
+    public BarState(int[] values) {
+        this.values = values.clone();
+        this.states = new byte[values.length];
+        this.isDirty = new boolean[values.length];
+        this.dirty = new int[values.length];
+        for (int value : values) {
+            maxValue = Math.max(maxValue, value);
+            minValue = Math.min(minValue, value);
+        }
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public int getValue(int index) {
+        return values[index];
+    }
+
+    public int getMaxValue() {
+        return maxValue;
+    }
+
+    public int getMinValue() {
+        return minValue;
+    }
+
+    // State to draw the bar with; highlighted bars show as SortEngine.PRIMARY
+    public byte getState(int index) {
+        if (index == highlightA || index == highlightB) {
+            return SortEngine.PRIMARY;
+        }
+        return states[index];
+    }
+
+    public void setValue(int index, int value) {
+        if (values[index] != value) {
+            values[index] = value;
+            maxValue = Math.max(maxValue, value);
+            minValue = Math.min(minValue, value);
+            markDirty(index);
+        }
+    }
+
+    public void swap(int i, int j) {
+        int temp = values[i];
+        setValue(i, values[j]);
+        setValue(j, temp);
+    }
+
+    public void setState(int from, int to, byte state) {
+        for (int k = from; k <= to; k++) {
+            if (states[k] != state) {
+                states[k] = state;
+                markDirty(k);
+            }
+        }
+    }
+
+    // Replaces all values and states at once, e.g. after seeking in a trace; only differences become dirty
+    public void load(int[] newValues, byte[] newStates) {
+        clearHighlight();
+        for (int k = 0; k < values.length; k++) {
+            setValue(k, newValues[k]);
+            setState(k, k, newStates[k]);
+        }
+    }
+
+    // Resets every bar to UNSORTED
+    public void clearStates() {
+        setState(0, states.length - 1, SortEngine.UNSORTED);
+    }
+
+    // Highlights the pair being compared until the next highlight or clearHighlight call
+    public void highlight(int i, int j) {
+        clearHighlight();
+        highlightA = i;
+        highlightB = j;
+        markDirty(i);
+        markDirty(j);
+    }
+
+    public void clearHighlight() {
+        if (highlightA >= 0) {
+            markDirty(highlightA);
+            markDirty(highlightB);
+            highlightA = -1;
+            highlightB = -1;
+        }
+    }
+
+    public int getDirtyCount() {
+        return dirtyCount;
+    }
+
+    // The k-th changed index, 0 <= k < getDirtyCount(), in no particular order
+    public int getDirtyIndex(int k) {
+        return dirty[k];
+    }
+
+    public void clearDirty() {
+        for (int k = 0; k < dirtyCount; k++) {
+            isDirty[dirty[k]] = false;
+        }
+        dirtyCount = 0;
+    }
+
+    private void markDirty(int index) {
+        if (!isDirty[index]) {
+            isDirty[index] = true;
+            dirty[dirtyCount++] = index;
+        }
+    }
+}
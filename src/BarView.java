@@ -0,0 +1,36 @@
+import javafx.scene.paint.Color;
+
+// Visual representation of a BarState.
+// SortingAlgorithms changes the state and calls render() once per animation step.
+public interface BarView {
+
+    // Colors of the worker lanes SortEngine.LANE .. SortEngine.LANE + SortEngine.LANES - 1
+    Color[] LANE_COLORS = {
+        Color.DARKORANGE, Color.TEAL, Color.GOLDENROD, Color.SLATEBLUE,
+        Color.DEEPPINK, Color.OLIVEDRAB, Color.SIENNA, Color.CADETBLUE
+    };
+
+    // Redraws every bar, e.g. after the visualization pane was resized
+    void layout();
+
+    // Redraws only the bars marked dirty in the state and clears the dirty set
+    void render();
+
+    static Color colorOf(byte state) {
+        switch (state) {
+            case SortEngine.PRIMARY:
+                return Color.BLUE;
+            case SortEngine.SECONDARY:
+                return Color.ORCHID;
+            case SortEngine.TERTIARY:
+                return Color.GOLD;
+            case SortEngine.SORTED:
+                return Color.GREEN;
+            default:
+                if (state >= SortEngine.LANE && state < SortEngine.LANE + SortEngine.LANES) {
+                    return LANE_COLORS[state - SortEngine.LANE];
+                }
+                return Color.RED;
+        }
+    }
+}
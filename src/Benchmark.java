@@ -0,0 +1,322 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Headless entry point: runs the sorting engine over a size sweep and input distributions without JavaFX
+// and prints one record per run as CSV or JSON. With --trace every combination is additionally run once
+// with a TraceFile.Writer attached, outside of the measurements, so the run can be replayed in the app later.
+// --keys also sorts the inputs as long keys, double keys or records of a key and its index through
+// KeySortEngine; record runs tell whether equal keys kept their order.
+//
+// Usage: java Benchmark [--algorithms merge,quick] [--sizes 1000,5000 | --sweep 1000:1000000[:2]]
+//                       [--distributions uniform,sorted] [--keys int,long,double,record] [--runs 3] [--warmup 1]
+//                       [--seed 42] [--format csv|json] [--trace DIR] [--help]
+//
+// One untimed warm-up run per combination is the default; --warmup 0 measures cold runs.
+public class Benchmark {
+
+    private static final int MAX_VALUE = Integer.MAX_VALUE;
+    public static final String[] KEY_TYPES = {"int", "long", "double", "record"};
+
+    private final List<String> algorithms = new ArrayList<>();
+    private final List<Integer> sizes = new ArrayList<>();
+    private final List<String> distributions = new ArrayList<>();
+    private final List<String> keyTypes = new ArrayList<>();
+    private int runs = 1;
+    // Unwarmed, the first measured run of a sweep includes the JIT compiling the algorithm
+    private int warmup = 1;
+    private long seed = 42;
+    private boolean json = false;
+    private Path traceDir;
+
+    public static void main(String[] args) {
+        if (List.of(args).contains("--help")) {
+            printUsage(System.out);
+            return;
+        }
+        Benchmark benchmark = new Benchmark();
+        try {
+            benchmark.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage(System.err);
+            System.exit(2);
+        }
+        benchmark.run(System.out);
+    }
+
+    private static void printUsage(PrintStream out) {
+        out.println("Usage: java Benchmark [--algorithms merge,quick] [--sizes 1000,5000 | --sweep MIN:MAX[:FACTOR]]");
+        out.println("                      [--distributions uniform,sorted] [--keys int,long,double,record] [--runs N] [--warmup N]");
+        out.println("                      [--seed S] [--format csv|json] [--trace DIR] [--help]");
+    }
+
+    private void parse(String[] args) {
+        for (int k = 0; k < args.length; k++) {
+            String option = args[k];
+            if (k + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++k];
+            switch (option) {
+                case "--algorithms":
+                    for (String name : value.split(",")) {
+                        algorithms.add(resolveAlgorithm(name));
+                    }
+                    break;
+                case "--sizes":
+                    for (String size : value.split(",")) {
+                        sizes.add(Integer.parseInt(size.trim()));
+                    }
+                    break;
+                case "--sweep":
+                    String[] parts = value.split(":");
+                    long size = Long.parseLong(parts[0]);
+                    long max = Long.parseLong(parts[1]);
+                    double factor = parts.length > 2 ? Double.parseDouble(parts[2]) : 2;
+                    if (size < 1 || factor <= 1) {
+                        throw new IllegalArgumentException("Invalid sweep: " + value);
+                    }
+                    for (; size <= max; size = Math.max(size + 1, (long) (size * factor))) {
+                        sizes.add((int) size);
+                    }
+                    break;
+                case "--distributions":
+                    for (String distribution : value.split(",")) {
+                        distributions.add(distribution.trim());
+                    }
+                    break;
+                case "--keys":
+                    for (String keys : value.split(",")) {
+                        if (!List.of(KEY_TYPES).contains(keys.trim())) {
+                            throw new IllegalArgumentException("Unknown key type: " + keys);
+                        }
+                        keyTypes.add(keys.trim());
+                    }
+                    break;
+                case "--runs":
+                    runs = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--format":
+                    if (!value.equalsIgnoreCase("csv") && !value.equalsIgnoreCase("json")) {
+                        throw new IllegalArgumentException("Unknown format: " + value);
+                    }
+                    json = "json".equalsIgnoreCase(value);
+                    break;
+                case "--trace":
+                    traceDir = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        if (keyTypes.isEmpty()) {
+            keyTypes.add("int");
+        }
+        boolean wide = !keyTypes.equals(List.of("int"));
+        if (algorithms.isEmpty()) {
+            algorithms.addAll(wide ? List.of(KeySortEngine.ALGORITHMS) : AlgorithmRegistry.names());
+        }
+        for (String algorithm : algorithms) {
+            if (wide && !KeySortEngine.supports(algorithm)) {
+                throw new IllegalArgumentException(algorithm + " sorts int keys only; --keys long, double and record "
+                    + "work with " + String.join(", ", KeySortEngine.ALGORITHMS));
+            }
+        }
+        if (sizes.isEmpty()) {
+            for (int size = 1000; size <= 16000; size *= 2) {
+                sizes.add(size);
+            }
+        }
+        if (distributions.isEmpty()) {
+            distributions.addAll(List.of(InputGenerator.DISTRIBUTIONS));
+        }
+    }
+
+    // Accepts either the display name ("Merge Sort") or a short key ("merge")
+    static String resolveAlgorithm(String name) {
+        String key = normalize(name);
+        for (String algorithm : AlgorithmRegistry.names()) {
+            if (normalize(algorithm).equals(key)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown algorithm: " + name);
+    }
+
+    private static String normalize(String name) {
+        String key = name.trim().toLowerCase(Locale.ROOT).replace(' ', '-');
+        return key.endsWith("-sort") ? key.substring(0, key.length() - 5) : key;
+    }
+
+    private void run(PrintStream out) {
+        if (json) {
+            out.println("[");
+        } else {
+            out.println("algorithm,distribution,n,run,wall_ns,comparisons,swaps,writes,reads,bytes_moved,allocated_bytes,aux_peak_bytes,keys,stable");
+        }
+        boolean first = true;
+        for (String algorithm : algorithms) {
+            for (String distribution : distributions) {
+                for (int n : sizes) {
+                    int[] input = InputGenerator.generate(distribution, n, MAX_VALUE, seed);
+                    for (String keys : keyTypes) {
+                        for (int w = 0; w < warmup; w++) {
+                            measure(algorithm, distribution, keys, input, 0);
+                        }
+                        for (int r = 1; r <= runs; r++) {
+                            String record = measure(algorithm, distribution, keys, input, r);
+                            if (json) {
+                                out.print(first ? "  " : ",\n  ");
+                            }
+                            out.print(record);
+                            if (!json) {
+                                out.println();
+                            }
+                            out.flush();
+                            first = false;
+                        }
+                    }
+                    if (traceDir != null) {
+                        writeTrace(algorithm, distribution, input);
+                    }
+                }
+            }
+        }
+        if (json) {
+            out.println("\n]");
+        }
+    }
+
+    private String measure(String algorithm, String distribution, String keys, int[] input, int run) {
+        if (!keys.equals("int")) {
+            return measureKeys(algorithm, distribution, keys, input, run);
+        }
+        int[] array = input.clone();
+        SortEngine engine = new SortEngine();
+        engine.setDistribution(distribution);
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        engine.sort(algorithm, array);
+        long wall = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+        long allocated = allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore;
+
+        for (int i = 1; i < array.length; i++) {
+            if (array[i - 1] > array[i]) {
+                throw new IllegalStateException(algorithm + " produced an unsorted array for " + distribution);
+            }
+        }
+        return format(algorithm, distribution, array.length, run, wall, allocated, engine.getMetrics(), keys, null);
+    }
+
+    // Long keys keep the order of the input but spread over the whole long range, so every radix pass
+    // counts; double keys are negative and fractional as well. Records are the int keys with their index.
+    private String measureKeys(String algorithm, String distribution, String keys, int[] input, int run) {
+        int n = input.length;
+        long[] longKeys = null;
+        double[] doubleKeys = null;
+        int[] payload = null;
+        if (keys.equals("double")) {
+            doubleKeys = new double[n];
+            for (int i = 0; i < n; i++) {
+                doubleKeys[i] = (input[i] - MAX_VALUE / 2.0) / 1024;
+            }
+        } else {
+            longKeys = new long[n];
+            for (int i = 0; i < n; i++) {
+                longKeys[i] = keys.equals("long") ? input[i] * 0x9E3779B9L : input[i];
+            }
+            if (keys.equals("record")) {
+                payload = new int[n];
+                for (int i = 0; i < n; i++) {
+                    payload[i] = i;
+                }
+            }
+        }
+        KeySortEngine engine = new KeySortEngine();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        if (doubleKeys != null) {
+            engine.sort(algorithm, doubleKeys);
+        } else if (payload != null) {
+            engine.sort(algorithm, longKeys, payload);
+        } else {
+            engine.sort(algorithm, longKeys);
+        }
+        long wall = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+        long allocated = allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore;
+
+        for (int i = 1; i < n; i++) {
+            boolean unsorted = doubleKeys != null ? Double.compare(doubleKeys[i - 1], doubleKeys[i]) > 0
+                : longKeys[i - 1] > longKeys[i] || payload != null && input[payload[i]] != longKeys[i];
+            if (unsorted) {
+                throw new IllegalStateException(algorithm + " produced unsorted " + keys + " keys for " + distribution);
+            }
+        }
+        Boolean stable = payload != null ? KeySortEngine.keptOrder(longKeys, payload) : null;
+        return format(algorithm, distribution, n, run, wall, allocated, engine.getMetrics(), keys, stable);
+    }
+
+    // stable is null unless records were sorted
+    private String format(String algorithm, String distribution, int n, int run, long wall, long allocated,
+                          SortMetrics metrics, String keys, Boolean stable) {
+        if (json) {
+            StringBuilder phases = new StringBuilder();
+            for (Map.Entry<String, Long> phase : metrics.getPhaseNanos().entrySet()) {
+                phases.append(phases.length() == 0 ? "" : ", ").append('"').append(phase.getKey()).append("\": ")
+                    .append(phase.getValue());
+            }
+            return String.format(Locale.ROOT,
+                "{\"algorithm\": \"%s\", \"distribution\": \"%s\", \"n\": %d, \"run\": %d, \"wall_ns\": %d, "
+                    + "\"comparisons\": %d, \"swaps\": %d, \"writes\": %d, \"reads\": %d, \"bytes_moved\": %d, "
+                    + "\"allocated_bytes\": %d, \"aux_peak_bytes\": %d, \"keys\": \"%s\", \"stable\": %s, "
+                    + "\"phases_ns\": {%s}}",
+                algorithm, distribution, n, run, wall,
+                metrics.getComparisons(), metrics.getSwaps(), metrics.getWrites(), metrics.getReads(),
+                metrics.getBytesMoved(), allocated, metrics.getPeakAuxBytes(), keys, stable, phases);
+        }
+        return String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%s,%s",
+            algorithm, distribution, n, run, wall,
+            metrics.getComparisons(), metrics.getSwaps(), metrics.getWrites(), metrics.getReads(),
+            metrics.getBytesMoved(), allocated, metrics.getPeakAuxBytes(), keys, stable == null ? "" : stable);
+    }
+
+    private void writeTrace(String algorithm, String distribution, int[] input) {
+        Path path = traceDir.resolve(normalize(algorithm) + "-" + distribution + "-" + input.length + TraceFile.EXTENSION);
+        try {
+            Files.createDirectories(traceDir);
+            try (TraceFile.Writer writer = new TraceFile.Writer(path, algorithm, input)) {
+                SortEngine engine = new SortEngine(writer);
+                engine.setDistribution(distribution);
+                engine.sort(algorithm, input.clone());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write " + path, e);
+        }
+    }
+
+    // Bytes allocated so far by the current thread, or -1 when the JVM cannot tell
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
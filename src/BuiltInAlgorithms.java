@@ -0,0 +1,276 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+// The algorithms that ship with the visualizer, listed in META-INF/services/SortAlgorithm in the order they
+// appear in the algorithm list. Each one delegates to the matching SortEngine method.
+public final class BuiltInAlgorithms {
+
+    private BuiltInAlgorithms() {
+    }
+
+    private abstract static class BuiltIn implements SortAlgorithm {
+        private final String name;
+        private final String complexity;
+        private final List<LegendItem> legend;
+
+        BuiltIn(String name, String complexity, List<LegendItem> legend) {
+            this.name = name;
+            this.complexity = complexity;
+            this.legend = legend;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getComplexity() {
+            return complexity;
+        }
+
+        @Override
+        public List<LegendItem> getLegend() {
+            return legend;
+        }
+    }
+
+    // Legend of the radix and counting sorts
+    private static List<SortAlgorithm.LegendItem> bucketLegend() {
+        return List.of(
+                new SortAlgorithm.LegendItem(SortEngine.UNSORTED, "Unsorted"),
+                new SortAlgorithm.LegendItem(SortEngine.PRIMARY, "Counting Key"),
+                new SortAlgorithm.LegendItem(SortEngine.LANE, "Bucket"),
+                new SortAlgorithm.LegendItem((byte) (SortEngine.LANE + 1), "Next Bucket"),
+                new SortAlgorithm.LegendItem(SortEngine.SORTED, "Sorted"));
+    }
+
+    public static class BubbleSort extends BuiltIn {
+        public BubbleSort() {
+            super("Bubble Sort", "Time: O(n²), Space: O(1)", List.of(
+                new LegendItem(SortEngine.UNSORTED, "Unsorted"),
+                new LegendItem(SortEngine.PRIMARY, "Comparing"),
+                new LegendItem(SortEngine.SORTED, "Sorted")));
+        }
+
+        @Override
+        public void sort(SortEngine engine, int[] array) {
+            engine.bubbleSort(array);
+        }
+    }
+
+    public static class SelectionSort extends BuiltIn {
+        public SelectionSort() {
+            super("Selection Sort", "Time: O(n²), Space: O(1)", List.of(
+                new LegendItem(SortEngine.UNSORTED, "Unsorted"),
+                new LegendItem(SortEngine.PRIMARY, "Current/Min"),
+                new LegendItem(SortEngine.SECONDARY, "New Min"),
+                new LegendItem(SortEngine.SORTED, "Sorted")));
+        }
+
+        @Override
+        public void sort(SortEngine engine, int[] array) {
+            engine.selectionSort(array);
+        }
+    }
+
+    public static class InsertionSort extends BuiltIn {
+        public InsertionSort() {
+            super("Insertion Sort", "Time: O(n²), Space: O(1)", List.of(
+                new LegendItem(SortEngine.UNSORTED, "Unsorted"),
+                new LegendItem(SortEngine.SORTED, "Sorted"),
+                new LegendItem(SortEngine.PRIMARY, "Comparing"),
+                new LegendItem(SortEngine.SECONDARY, "Key/Insert")));
+        }
+
+        @Override
+        public void sort(SortEngine engine, int[] array) {
+            engine.insertionSort(array);
+        }
+    }
+
+    public static class ShellSort extends BuiltIn {
+        public ShellSort() {
+            super("Shell Sort", "Time: O(n^2) Shell gaps, O(n^1.5) Knuth, O(n^4/3) Sedgewick, Space: O(1)", List.of(
+                new LegendItem(SortEngine.UNSORTED, "Unsorted"),
+                new LegendItem(SortEngine.PRIMARY, "Comparing"),
+                new LegendItem(SortEngine.LANE, "Chain"),
+                new LegendItem((byte) (SortEngine.LANE + 1), "Next Chain (one gap apart)"),
+                new LegendItem(SortEngine.SORTED, "Sorted")));
+        }
+
+        @Override
+        public void sort(SortEngine engine, int[] array) {
+            engine.shellSort(array, SortEngine.DEFAULT_GAP_SEQUENCE);
+        }
+    }
+
+    public static class MergeSort extends BuiltIn {
+        public MergeSort() {
+            super("Merge Sort", "Time: O(n log n), Space: O(n)", List.of(
+                new LegendItem(SortEngine.UNSORTED, "Unsorted"),
+                new LegendItem(SortEngine.PRIMARY, "Left Subarray"),
+                new LegendItem(SortEngine.SECONDARY, "Right Subarray"),
+                new LegendItem(SortEngine.SORTED, "Merged/Sorted")));
+        }
+
+        @Override
+        public void sort(SortEngine engine, int[] array) {
+            engine.mergeSort(array);
+        }
+    }
+
+    public static class TimSort extends BuiltIn {
+        public TimSort() {
+            super("TimSort", "Time: O(n log n), O(n) on presorted runs, Space: O(n / 2)", List.of(
+                new LegendItem(SortEngine.UNSORTED, "Unsorted"),
+                new LegendItem(SortEngine.PRIMARY, "Comparing"),
+                new LegendItem(SortEngine.SECONDARY, "Inserting"),
+                new LegendItem(SortEngine.LANE, "Run"),
+                new LegendItem((byte) (SortEngine.LANE + 1), "Next Run"),
+                new LegendItem(SortEngine.TERTIARY, "Galloped Block"),
+                new LegendItem(SortEngine.SORTED, "Sorted")));
+        }
+
+        @Override
+        public void sort(SortEngine engine, int[] array) {
+            engine.timSort(array);
+        }
+    }
+
+    public static class QuickSort extends BuiltIn {
+        public QuickSort() {
+            super("Quick Sort", "Time: O(n log n), Space: O(log n)", List.of(
+                new LegendItem(SortEngine.UNSORTED, "Unsorted/Partition"),
+                new LegendItem(SortEngine.PRIMARY, "Comparing"),
+                new LegendItem(SortEngine.SECONDARY, "Pivot"),
+                new LegendItem(SortEngine.SORTED, "Sorted")));
+        }
+
+        @Override
+        public void sort(SortEngine engine, int[] array) {
+            engine.quickSort(array);
+        }
+    }
+
+    public static class DualPivotQuickSort extends BuiltIn {
+        public DualPivotQuickSort() {
+            super("Dual-Pivot Quick Sort", "Time: O(n log n), Space: O(log n)", List.of(
+                new LegendItem(SortEngine.UNSORTED, "Unsorted/Partition"),
+                new LegendItem(SortEngine.PRIMARY, "Comparing"),
+                new LegendItem(SortEngine.SECONDARY, "Pivot 1 (smaller)"),
+                new LegendItem(SortEngine.TERTIARY, "Pivot 2 (larger)"),
+                new LegendItem(SortEngine.SORTED, "Sorted")));
+        }
+
+        @Override
+        public void sort(SortEngine engine, int[] array) {
+            engine.dualPivotQuickSort(array);
+        }
+    }
+
+    public static class IntroSort extends BuiltIn {
+        public IntroSort() {
+            super("Intro Sort", "Time: O(n log n) worst case, Space: O(log n)", List.of(
+                new LegendItem(SortEngine.UNSORTED, "Unsorted"),
+                new LegendItem(SortEngine.PRIMARY, "Comparing"),
+                new LegendItem(SortEngine.SECONDARY, "Pivot/Equal Keys"),
+                new LegendItem(SortEngine.LANE, "Heap Sort Fallback"),
+                new LegendItem(SortEngine.SORTED, "Sorted")));
+        }
+
+        @Override
+        public void sort(SortEngine engine, int[] array) {
+            engine.introSort(array);
+        }
+    }
+
+    public static class HeapSort extends BuiltIn {
+        public HeapSort() {
+            super("Heap Sort", "Time: O(n log n) worst case, Space: O(1)", List.of(
+                new LegendItem(SortEngine.PRIMARY, "Comparing"),
+                new LegendItem(SortEngine.LANE, "Heap"),
+                new LegendItem(SortEngine.SORTED, "Sorted")));
+        }
+
+        @Override
+        public void sort(SortEngine engine, int[] array) {
+            engine.heapSort(array);
+        }
+    }
+
+    public static class ParallelMergeSort extends BuiltIn {
+        public ParallelMergeSort() {
+            super("Parallel Merge Sort", "Time: O(n log n / p), Space: O(n)", null);
+        }
+
+        @Override
+        public void sort(SortEngine engine, int[] array) {
+            engine.parallelMergeSort(array);
+        }
+
+        // One lane per worker, up to four
+        @Override
+        public List<LegendItem> getLegend() {
+            List<LegendItem> legend = new ArrayList<>();
+            legend.add(new LegendItem(SortEngine.UNSORTED, "Unsorted"));
+            legend.add(new LegendItem(SortEngine.PRIMARY, "Comparing"));
+            for (int k = 0; k < Math.min(4, ForkJoinPool.commonPool().getParallelism()); k++) {
+                legend.add(new LegendItem((byte) (SortEngine.LANE + k), "Worker " + (k + 1)));
+            }
+            legend.add(new LegendItem(SortEngine.SORTED, "Sorted"));
+            return legend;
+        }
+    }
+
+    public static class ExternalMergeSort extends BuiltIn {
+        public ExternalMergeSort() {
+            super("External Merge Sort", "Time: O(n log n), I/O: O(n log_k(n / M)) for memory M, Space: O(M)",
+                List.of(
+                    new LegendItem(SortEngine.UNSORTED, "Unsorted"),
+                    new LegendItem(SortEngine.PRIMARY, "Comparing"),
+                    new LegendItem(SortEngine.LANE, "Run 1"),
+                    new LegendItem((byte) (SortEngine.LANE + 1), "Run 2"),
+                    new LegendItem(SortEngine.SORTED, "Sorted")));
+        }
+
+        @Override
+        public void sort(SortEngine engine, int[] array) {
+            engine.externalMergeSort(array);
+        }
+    }
+
+    public static class LsdRadixSort extends BuiltIn {
+        public LsdRadixSort() {
+            super("LSD Radix Sort", "Time: O(4n) for 4-byte keys, Space: O(n + 256)", bucketLegend());
+        }
+
+        @Override
+        public void sort(SortEngine engine, int[] array) {
+            engine.lsdRadixSort(array);
+        }
+    }
+
+    public static class MsdRadixSort extends BuiltIn {
+        public MsdRadixSort() {
+            super("MSD Radix Sort", "Time: O(4n) for 4-byte keys, Space: O(n + 256)", bucketLegend());
+        }
+
+        @Override
+        public void sort(SortEngine engine, int[] array) {
+            engine.msdRadixSort(array);
+        }
+    }
+
+    public static class CountingSort extends BuiltIn {
+        public CountingSort() {
+            super("Counting Sort", "Time: O(n + k) for k keys, Space: O(n + k)", bucketLegend());
+        }
+
+        @Override
+        public void sort(SortEngine engine, int[] array) {
+            engine.countingSort(array);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.AnchorPane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+
+// Draws every bar onto a single Canvas from a primitive array, so large inputs need no scene-graph nodes.
+// Bar width adapts to the pane width; when there are more bars than pixels each pixel column shows the
+// tallest bar it covers. Heights run from the smallest value, so negative values are drawn too. Labels are
+// drawn only when a bar is wide enough to hold one.
+public class CanvasBarView implements BarView {
+
+    private static final double TOP = 50;
+    private static final double LABEL_MIN_SLOT = 24;
+    private static final Color LABEL_COLOR = Color.web("#27548A");
+    private static final Font LABEL_FONT = Font.font(null, FontWeight.BOLD, 13);
+
+    private final AnchorPane pane;
+    private final Canvas canvas = new Canvas();
+    private final BarState state;
+    // Space above the bars, for the value labels
+    private final double top;
+
+    // Geometry of the last full layout
+    private double slot;
+    private double gap;
+    private double scale;
+    private int scaledMax;
+    private int scaledMin;
+    private int columns;
+    private boolean[] columnDirty = new boolean[0];
+    private int[] dirtyColumns = new int[0];
+
+    public CanvasBarView(AnchorPane pane, BarState state) {
+        this(pane, state, TOP);
+    }
+
+    public CanvasBarView(AnchorPane pane, BarState state, double top) {
+        this.pane = pane;
+        this.state = state;
+        this.top = top;
+        pane.getChildren().add(canvas);
+        layout();
+    }
+
+    @Override
+    public void layout() {
+        canvas.setWidth(pane.getWidth());
+        canvas.setHeight(pane.getHeight());
+
+        int n = state.size();
+        double width = canvas.getWidth();
+        slot = n > 0 ? width / n : 0;
+        gap = slot >= 4 ? Math.min(slot / 2, 15) : 0;
+        scaledMax = state.getMaxValue();
+        scaledMin = state.getMinValue();
+        scale = Math.max(0, canvas.getHeight() - top) / ((double) scaledMax - scaledMin);
+        columns = slot < 1 ? (int) width : 0;
+        if (columnDirty.length != columns) {
+            columnDirty = new boolean[columns];
+            dirtyColumns = new int[columns];
+        }
+
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        g.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if (columns > 0) {
+            for (int x = 0; x < columns; x++) {
+                drawColumn(g, x);
+            }
+        } else if (slot > 0) {
+            for (int i = 0; i < n; i++) {
+                drawBar(g, i);
+            }
+        }
+        state.clearDirty();
+    }
+
+    @Override
+    public void render() {
+        if (state.getMaxValue() != scaledMax || state.getMinValue() != scaledMin) {
+            layout();
+            return;
+        }
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        int dirtyCount = state.getDirtyCount();
+        if (columns > 0) {
+            int n = state.size();
+            int count = 0;
+            for (int k = 0; k < dirtyCount; k++) {
+                int x = (int) (((long) (state.getDirtyIndex(k) + 1) * columns - 1) / n);
+                if (!columnDirty[x]) {
+                    columnDirty[x] = true;
+                    dirtyColumns[count++] = x;
+                }
+            }
+            for (int k = 0; k < count; k++) {
+                columnDirty[dirtyColumns[k]] = false;
+                drawColumn(g, dirtyColumns[k]);
+            }
+        } else if (slot > 0) {
+            for (int k = 0; k < dirtyCount; k++) {
+                drawBar(g, state.getDirtyIndex(k));
+            }
+        }
+        state.clearDirty();
+    }
+
+    private void drawBar(GraphicsContext g, int i) {
+        // Snap to whole pixels so clearing one bar never touches its neighbours
+        double x = Math.floor(i * slot);
+        double w = Math.floor((i + 1) * slot) - x;
+        g.clearRect(x, 0, w, canvas.getHeight());
+        g.setFill(BarView.colorOf(state.getState(i)));
+        g.fillRect(x + gap / 2, top, w - gap, ((double) state.getValue(i) - scaledMin) * scale);
+
+        if (slot >= LABEL_MIN_SLOT) {
+            g.setFill(LABEL_COLOR);
+            g.setFont(LABEL_FONT);
+            g.setTextAlign(TextAlignment.CENTER);
+            g.setTextBaseline(VPos.BASELINE);
+            g.fillText(String.valueOf(state.getValue(i)), x + w / 2, top - 5);
+        }
+    }
+
+    // Column x covers indices [x * n / columns, (x + 1) * n / columns). It is drawn with the tallest value
+    // it covers, and a highlighted bar wins over plain unsorted ones so comparisons stay visible.
+    private void drawColumn(GraphicsContext g, int x) {
+        int n = state.size();
+        int from = (int) ((long) x * n / columns);
+        int to = (int) ((long) (x + 1) * n / columns);
+        int max = scaledMin;
+        byte shown = state.getState(from);
+        for (int i = from; i < to; i++) {
+            max = Math.max(max, state.getValue(i));
+            if (shown == SortEngine.UNSORTED) {
+                shown = state.getState(i);
+            }
+        }
+        g.clearRect(x, 0, 1, canvas.getHeight());
+        g.setFill(BarView.colorOf(shown));
+        g.fillRect(x, top, 1, ((double) max - scaledMin) * scale);
+    }
+}
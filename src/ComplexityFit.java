@@ -0,0 +1,167 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.function.IntConsumer;
+
+// Measures how an algorithm scales on this machine: sorts generated inputs of doubling size with an untraced
+// engine and fits the comparisons and the wall time against n, n log n and n^2. The exponent is the slope of
+// the log-log line through the points; the model whose ratio to the measurements varies least wins, and its
+// constant is the geometric mean of that ratio. Cache and memory effects show up as a time exponent above
+// the comparison exponent.
+public class ComplexityFit {
+
+    public static final String[] MODELS = {"n", "n log n", "n^2"};
+
+    private static final int MIN_SIZE = 1 << 10;
+    private static final int MAX_SIZE = 1 << 22;
+    // Timed runs per size, of which the median counts
+    private static final int RUNS = 3;
+    // Doubling stops once one run takes longer than this
+    private static final long SIZE_BUDGET_NANOS = 500_000_000L;
+    // Small sizes are sorted over and over for this long first; until C2 has compiled the algorithm they run
+    // several times slower, which would flatten the fitted exponent
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+
+    private final String algorithm;
+    private final List<Long> sizes = new ArrayList<>();
+    private final List<Long> comparisons = new ArrayList<>();
+    private final List<Long> nanos = new ArrayList<>();
+
+    private ComplexityFit(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    // Runs the sweep, telling progress each size before it is measured. Throws CancellationException when
+    // the thread is interrupted.
+    public static ComplexityFit measure(String algorithm, String distribution, long seed, IntConsumer progress) {
+        ComplexityFit fit = new ComplexityFit(algorithm);
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        for (int n = MIN_SIZE; System.nanoTime() < warmupEnd; n = n < MIN_SIZE * 16 ? n * 2 : MIN_SIZE) {
+            checkInterrupted();
+            new SortEngine().sort(algorithm, InputGenerator.generate(distribution, n, Integer.MAX_VALUE, seed));
+        }
+        for (int n = MIN_SIZE; n <= MAX_SIZE; n *= 2) {
+            checkInterrupted();
+            progress.accept(n);
+            int[] input = InputGenerator.generate(distribution, n, Integer.MAX_VALUE, seed);
+            long[] times = new long[RUNS];
+            long count = 0;
+            for (int r = 0; r < RUNS; r++) {
+                SortEngine engine = new SortEngine();
+                engine.sort(algorithm, input.clone());
+                times[r] = engine.getMetrics().getElapsedNanos();
+                count = engine.getComparisons();
+            }
+            Arrays.sort(times);
+            fit.sizes.add((long) n);
+            fit.comparisons.add(count);
+            fit.nanos.add(times[RUNS / 2]);
+            if (times[0] > SIZE_BUDGET_NANOS) {
+                break;
+            }
+        }
+        return fit;
+    }
+
+    private static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public long getMaxSize() {
+        return sizes.get(sizes.size() - 1);
+    }
+
+    // e.g. "Measured n = 1K..4M: cmp ~ 1.00 n log n (n^1.07), time ~ 4.1 ns n log n (n^1.12)"
+    public String format() {
+        return String.format(Locale.ROOT, "Measured n = %s..%s: cmp %s, time %s", shortSize(sizes.get(0)),
+            shortSize(getMaxSize()), describe(comparisons, ""), describe(nanos, " ns"));
+    }
+
+    private String describe(List<Long> values, String unit) {
+        if (sizes.size() < 2) {
+            return "needs more sizes";
+        }
+        for (long value : values) {
+            if (value <= 0) {
+                return "none";
+            }
+        }
+        int best = 0;
+        double bestSpread = Double.MAX_VALUE;
+        double bestConstant = 0;
+        for (int m = 0; m < MODELS.length; m++) {
+            // ln(value / model(n)) is constant for the right model
+            double[] logRatios = new double[sizes.size()];
+            for (int i = 0; i < logRatios.length; i++) {
+                logRatios[i] = Math.log(values.get(i) / model(m, sizes.get(i)));
+            }
+            double mean = mean(logRatios);
+            double spread = 0;
+            for (double logRatio : logRatios) {
+                spread += (logRatio - mean) * (logRatio - mean);
+            }
+            if (spread < bestSpread) {
+                bestSpread = spread;
+                best = m;
+                bestConstant = Math.exp(mean);
+            }
+        }
+        return String.format(Locale.ROOT, "~ %.3g%s %s (n^%.2f)", bestConstant, unit, MODELS[best], exponent(values));
+    }
+
+    // Least-squares slope of ln(value) over ln(n)
+    private double exponent(List<Long> values) {
+        double[] x = new double[sizes.size()];
+        double[] y = new double[sizes.size()];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = Math.log(sizes.get(i));
+            y[i] = Math.log(values.get(i));
+        }
+        double meanX = mean(x);
+        double meanY = mean(y);
+        double covariance = 0;
+        double variance = 0;
+        for (int i = 0; i < x.length; i++) {
+            covariance += (x[i] - meanX) * (y[i] - meanY);
+            variance += (x[i] - meanX) * (x[i] - meanX);
+        }
+        return covariance / variance;
+    }
+
+    private static double model(int m, long n) {
+        switch (m) {
+            case 0:
+                return n;
+            case 1:
+                return n * (Math.log(n) / Math.log(2));
+            default:
+                return (double) n * n;
+        }
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    private static String shortSize(long n) {
+        if (n >= 1 << 20) {
+            return (n >> 20) + "M";
+        }
+        if (n >= 1 << 10) {
+            return (n >> 10) + "K";
+        }
+        return String.valueOf(n);
+    }
+}
@@ -1,22 +1,34 @@
 import javafx.animation.Timeline;
-import javafx.animation.KeyFrame;
 import javafx.collections.FXCollections;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.Slider;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.paint.Color;
-import javafx.scene.text.Text;
-import java.util.ArrayList;
 import javafx.scene.layout.HBox;
 import javafx.scene.control.Label;
 import javafx.geometry.Pos;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.control.Alert;
 import javafx.scene.control.TextArea;
+import javafx.concurrent.Task;
+import javafx.stage.FileChooser;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class Controller {
 
@@ -43,6 +55,32 @@ public class Controller {
     @FXML
     private javafx.scene.control.Label swapsLabel;
 
+    @FXML
+    private javafx.scene.control.Label writesLabel;
+
+    @FXML
+    private javafx.scene.control.Label readsLabel;
+
+    @FXML
+    private Button measureBtn;
+
+    // Measured scaling of the selected algorithm, next to the theoretical complexity
+    @FXML
+    private javafx.scene.control.Label fitLabel;
+
+    private Task<ComplexityFit> measureTask;
+
+    // Time per phase and peak scratch memory of an untraced run on the same input
+    @FXML
+    private javafx.scene.control.Label phaseLabel;
+
+    @FXML
+    private javafx.scene.control.Label speedupLabel;
+
+    // Bytes of element data copied per element, shown once a run has finished
+    @FXML
+    private javafx.scene.control.Label movedLabel;
+
     @FXML
     private Button viewDetailsBtn;
 
@@ -57,7 +95,8 @@ public class Controller {
     @FXML
     private void handleViewDetails(ActionEvent event) {
         String algo = currentAlgorithm;
-        String details = AlgorithmDescription.DETAILS.getOrDefault(algo, "No details available.");
+        SortAlgorithm sortAlgorithm = AlgorithmRegistry.get(algo);
+        String details = sortAlgorithm != null ? sortAlgorithm.getDescription() : "No details available.";
         Alert alert = new Alert(javafx.scene.control.Alert.AlertType.INFORMATION);
         alert.setTitle(algo + " Details");
         alert.setHeaderText(algo + " Details");
@@ -114,27 +153,30 @@ public class Controller {
         this.legendBox = (HBox) root.lookup("#legendBox");
 
         visualizationPane.widthProperty().addListener((obs, oldVal, newVal) -> {
-            if (!rects.isEmpty()) {
-                centerRectangles();
+            if (barView != null) {
+                barView.layout();
+            }
+        });
+        visualizationPane.heightProperty().addListener((obs, oldVal, newVal) -> {
+            if (barView != null) {
+                barView.layout();
             }
         });
 
         initAlgorithmChoiceBox();
+
+        initViewChoiceBoxes();
         
         initSpeedSlider();
 
+        initSeekSlider();
+
         randomizer(new ActionEvent());
         updateLegend(currentAlgorithm);
     }
 
     private void initAlgorithmChoiceBox() {
-        Algorithm.setItems(FXCollections.observableArrayList(
-            "Bubble Sort",
-            "Selection Sort",
-            "Insertion Sort",
-            "Merge Sort",
-            "Quick Sort"
-        ));
+        Algorithm.setItems(FXCollections.observableArrayList(AlgorithmRegistry.names()));
 
         Algorithm.setValue("Bubble Sort");
         updateComplexityLabel("Bubble Sort");
@@ -143,9 +185,69 @@ public class Controller {
             if (newVal != null) {
                 currentAlgorithm = newVal;
                 updateComplexityLabel(newVal);
+                cancelMeasurement();
                 updateLegend(newVal);
+                gapChoice.setVisible("Shell Sort".equals(newVal));
+                // Heap sort is easiest to follow on the tree; not while a trace is open, as that rebuilds the view
+                if ("Heap Sort".equals(newVal) && traceReader == null) {
+                    viewChoice.setValue(TREE_VIEW);
+                }
+            }
+        });
+
+        gapChoice.setItems(FXCollections.observableArrayList(SortEngine.GAP_SEQUENCES));
+        gapChoice.setValue(SortEngine.DEFAULT_GAP_SEQUENCE);
+        gapChoice.managedProperty().bind(gapChoice.visibleProperty());
+        gapChoice.setVisible(false);
+    }
+
+    // Sorts inputs of the chosen distribution and seed in doubling sizes off the FX thread and shows how
+    // comparisons and time grow with n
+    @FXML
+    void handleMeasure(ActionEvent event) {
+        cancelMeasurement();
+        String algorithm = "Shell Sort".equals(currentAlgorithm)
+            ? SortEngine.shellSortName(gapChoice.getValue()) : currentAlgorithm;
+        String sweepDistribution = distributionChoice.getValue();
+        long sweepSeed = seed;
+        Task<ComplexityFit> task = new Task<>() {
+            @Override
+            protected ComplexityFit call() {
+                updateMessage("Warming up " + algorithm + "...");
+                return ComplexityFit.measure(algorithm, sweepDistribution, sweepSeed,
+                    n -> updateMessage("Measuring " + algorithm + " at n = " + n + "..."));
             }
+        };
+        fitLabel.textProperty().bind(task.messageProperty());
+        measureBtn.setDisable(true);
+        task.setOnSucceeded(e -> {
+            measurementFinished(task);
+            fitLabel.setText(task.getValue().format() + " (" + sweepDistribution + " input)");
+        });
+        task.setOnFailed(e -> {
+            measurementFinished(task);
+            fitLabel.setText("Measurement failed: " + task.getException().getMessage());
         });
+        measureTask = task;
+        Thread thread = new Thread(task, "complexity-measurement");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void cancelMeasurement() {
+        if (measureTask != null) {
+            measureTask.cancel(true);
+            measurementFinished(measureTask);
+        }
+        fitLabel.setText("");
+    }
+
+    private void measurementFinished(Task<ComplexityFit> task) {
+        if (measureTask == task) {
+            measureTask = null;
+            fitLabel.textProperty().unbind();
+            measureBtn.setDisable(false);
+        }
     }
 
     private void updateComplexityLabel(String algorithm) {
@@ -155,12 +257,41 @@ public class Controller {
         }
     }
 
-    private void updatePerformanceLabel() {
-        if (comparisonsLabel != null && swapsLabel != null && sortingAlgorithms != null) {
-            int comparisons = sortingAlgorithms.getComparisons();
-            int swaps = sortingAlgorithms.getSwaps();
-            comparisonsLabel.setText(String.valueOf(comparisons));
-            swapsLabel.setText(String.valueOf(swaps));
+    // Counters are pushed by the running SortingAlgorithms, at most once per FX event loop turn and only
+    // when they changed; each label is touched only when its own value did
+    private final MetricsChannel metricsChannel = new MetricsChannel(this::updatePerformanceLabel);
+    private MetricsChannel.Snapshot shownCounters = EMPTY_COUNTERS;
+    private static final MetricsChannel.Snapshot EMPTY_COUNTERS = new MetricsChannel.Snapshot(0, 0, 0, 0, false, null);
+
+    private void updatePerformanceLabel(MetricsChannel.Snapshot counters) {
+        MetricsChannel.Snapshot shown = shownCounters;
+        shownCounters = counters;
+        if (counters.getComparisons() != shown.getComparisons()) {
+            comparisonsLabel.setText(String.valueOf(counters.getComparisons()));
+        }
+        if (counters.getSwaps() != shown.getSwaps()) {
+            swapsLabel.setText(String.valueOf(counters.getSwaps()));
+        }
+        if (counters.getWrites() != shown.getWrites()) {
+            writesLabel.setText(String.valueOf(counters.getWrites()));
+        }
+        // Replay only sees the inspection reads; the engine's full count replaces them once the run is done
+        SortMetrics metrics = counters.getMetrics();
+        long reads = metrics != null ? metrics.getReads() : counters.getReads();
+        if (reads != (shown.getMetrics() != null ? shown.getMetrics().getReads() : shown.getReads())) {
+            readsLabel.setText(String.valueOf(reads));
+        }
+        if (metrics != shown.getMetrics()) {
+            movedLabel.setText(metrics == null || bars.size() == 0 ? ""
+                : String.format(", Moved: %.1f B/elem, Aux peak: %s", (double) metrics.getBytesMoved() / bars.size(),
+                    SortMetrics.formatBytes(metrics.getPeakAuxBytes())));
+        }
+        if (traceReader != null && !seekSlider.isValueChanging()) {
+            updatingSeekSlider = true;
+            seekSlider.setValue(counters.getPosition());
+            updatingSeekSlider = false;
+            positionLabel.setText(counters.getPosition() + " / " + traceReader.getTotalSteps()
+                + (counters.hasCheckpoints() ? "" : " (indexing)"));
         }
     }
 
@@ -183,11 +314,72 @@ public class Controller {
         }
     }
 
-    final int N = 15;  
-    final int W = 15;
-    final int gap = 15;
-    ArrayList<Rectangle> rects = new ArrayList<>();
-    ArrayList<Text> labels = new ArrayList<>();
+    // Above this many elements bars are always drawn on a Canvas
+    private static final int MAX_NODE_BARS = 200;
+
+    @FXML
+    private ChoiceBox<Integer> sizeChoice;
+
+    @FXML
+    private ChoiceBox<String> viewChoice;
+    private static final String TREE_VIEW = "Tree";
+
+    // Gap sequence of Shell Sort, only shown while it is selected
+    @FXML
+    private ChoiceBox<String> gapChoice;
+
+    // Step by step replays one step per tick; the other modes replay many steps per frame
+    @FXML
+    private ChoiceBox<String> modeChoice;
+    private static final String STEP_MODE = "Step by step";
+    private static final String FASTEST_MODE = "As fast as possible";
+
+    private int[] values = new int[0];
+    // How values came about, for the JFR events of the runs
+    private String distribution = InputGenerator.DISTRIBUTIONS[0];
+    private BarState bars;
+    private BarView barView;
+
+    private void initViewChoiceBoxes() {
+        sizeChoice.setItems(FXCollections.observableArrayList(15, 50, 100, 500, 1000, 10000, 100000));
+        sizeChoice.setValue(15);
+        sizeChoice.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal != null) {
+                generate();
+            }
+        });
+
+        distributionChoice.setItems(FXCollections.observableArrayList(InputGenerator.DISTRIBUTIONS));
+        distributionChoice.setValue(InputGenerator.DISTRIBUTIONS[0]);
+        distributionChoice.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal != null) {
+                generate();
+            }
+        });
+        customArrayField.managedProperty().bind(customArrayField.visibleProperty());
+        loadProgress.managedProperty().bind(loadProgress.visibleProperty());
+
+        modeChoice.setItems(FXCollections.observableArrayList(
+            STEP_MODE,
+            "Finish in 5 s",
+            "Finish in 15 s",
+            "Finish in 60 s",
+            FASTEST_MODE
+        ));
+        modeChoice.setValue(STEP_MODE);
+
+        viewChoice.setItems(FXCollections.observableArrayList("Bars", "Canvas", TREE_VIEW));
+        viewChoice.setValue("Bars");
+        viewChoice.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal != null && barView != null) {
+                stopSorting();
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = bars.getValue(i);
+                }
+                showValues();
+            }
+        });
+    }
 
     @FXML
     private Button rndBtn;
@@ -201,39 +393,101 @@ public class Controller {
     @FXML
     private TextField customArrayField;
 
+    // Random arrays are generated from the chosen distribution and the seed shown, so a run can be repeated
+    // by entering its seed again
+    @FXML
+    private ChoiceBox<String> distributionChoice;
+
+    @FXML
+    private TextField seedField;
+
+    private long seed;
+    // Seed of the current values, or null when they were not generated
+    private Long inputSeed;
+    private static final int MAX_BAR_VALUE = 250;
+
     private boolean customInputMode = false;
 
+    // Generates a new array with a fresh seed
     @FXML
     void randomizer(ActionEvent event) {
+        seed = ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE);
+        generate();
+    }
+
+    @FXML
+    void handleSeed(ActionEvent event) {
+        try {
+            seed = Long.parseLong(seedField.getText().trim());
+            generate();
+        } catch (NumberFormatException e) {
+            seedField.setText(Long.toString(seed));
+        }
+    }
+
+    // Regenerates the array from the current size, distribution and seed
+    private void generate() {
+        stopSorting();
+
+        int n = sizeChoice.getValue() != null ? sizeChoice.getValue() : 15;
+        distribution = distributionChoice.getValue();
+        values = InputGenerator.generate(distribution, n, MAX_BAR_VALUE, seed);
+        inputSeed = seed;
+        seedField.setText(Long.toString(seed));
+
+        showValues();
+    }
+
+    private void stopSorting() {
         if (sortingAlgorithms != null) {
             sortingAlgorithms.stopAnimation();
         }
+        closeTrace();
 
-        if (comparisonsLabel != null && swapsLabel != null) {
-            comparisonsLabel.setText("0");
-            swapsLabel.setText("0");
+        metricsChannel.reset();
+        shownCounters = EMPTY_COUNTERS;
+        comparisonsLabel.setText("0");
+        swapsLabel.setText("0");
+        writesLabel.setText("0");
+        readsLabel.setText("0");
+        cancelComparison();
+        speedupLabel.setText("");
+        movedLabel.setText("");
+        if (phaseTask != null) {
+            phaseTask.cancel(true);
+            phaseTask = null;
         }
+        phaseLabel.setText("");
+        untracedMetrics = null;
+    }
 
-        visualizationPane.getChildren().removeAll(rects);
-        visualizationPane.getChildren().removeAll(labels);
-        rects.clear();
-        labels.clear();
+    // Rebuilds the bar view for the current values
+    private void showValues() {
+        visualizationPane.getChildren().clear();
+        bars = new BarState(values);
+        if (TREE_VIEW.equals(viewChoice.getValue())) {
+            barView = new HeapTreeView(visualizationPane, bars);
+        } else if (values.length > MAX_NODE_BARS || "Canvas".equals(viewChoice.getValue())) {
+            barView = new CanvasBarView(visualizationPane, bars);
+        } else {
+            barView = new RectangleBarView(visualizationPane, bars);
+        }
+    }
 
-        for (int i = 0; i < N; i++) {
-            Rectangle rect = new Rectangle();
-            rect.setWidth(W);
-            rect.setHeight(Math.random() * 250);
-            rect.setFill(Color.RED);
-            rects.add(rect);
+    @FXML
+    private Button raceBtn;
 
-            Text label = new Text(String.valueOf((int) rect.getHeight()));
-            label.getStyleClass().add("bar-label");
-            labels.add(label);
+    // Opens race mode on a copy of the current bars
+    @FXML
+    void handleRace(ActionEvent event) {
+        if (bars == null || bars.size() == 0) {
+            return;
         }
-
-        centerRectangles();
-        visualizationPane.getChildren().addAll(rects);
-        visualizationPane.getChildren().addAll(labels);
+        int[] input = new int[bars.size()];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = bars.getValue(i);
+        }
+        new RaceView(visualizationPane.getScene().getWindow(), input).show();
     }
 
     @FXML
@@ -262,41 +516,19 @@ public class Controller {
         }
 
         try {
-            String[] values = input.split(",");
-
-            if (sortingAlgorithms != null) {
-                sortingAlgorithms.stopAnimation();
-            }
-
-            if (comparisonsLabel != null && swapsLabel != null) {
-                comparisonsLabel.setText("0");
-                swapsLabel.setText("0");
+            int[] parsed = ArrayFile.parse(input);
+            if (parsed.length == 0) {
+                throw new IOException("No values");
             }
 
-            visualizationPane.getChildren().removeAll(rects);
-            visualizationPane.getChildren().removeAll(labels);
-            rects.clear();
-            labels.clear();
-
-            for (String value : values) {
-                double height = Double.parseDouble(value.trim());
-                Rectangle rect = new Rectangle();
-                rect.setWidth(W);
-                rect.setHeight(height);
-                rect.setFill(Color.RED);
-                rects.add(rect);
-                
-                Text label = new Text(String.valueOf((int) height));
-                label.getStyleClass().add("bar-label");
-                labels.add(label);
-            }
-
-            centerRectangles();
-            visualizationPane.getChildren().addAll(rects);
-            visualizationPane.getChildren().addAll(labels);
+            stopSorting();
+            this.values = parsed;
+            distribution = "custom";
+            inputSeed = null;
+            showValues();
             customArrayField.clear();
 
-        } catch (NumberFormatException e) {
+        } catch (IOException e) {
             customArrayField.setText("Invalid input! Use comma-separated numbers");
             customInputMode = true;
             customArrayBtn.setText("Apply");
@@ -307,81 +539,627 @@ public class Controller {
     }
 
     @FXML
-    void sort(ActionEvent event) {
-        if (sortingAlgorithms != null) {
-            sortingAlgorithms.stopAnimation();
+    private Button loadFileBtn;
+
+    @FXML
+    private ProgressBar loadProgress;
+
+    private Task<int[]> loadTask;
+
+    // Loads values from a CSV, text or raw int32 file in the background, showing how much has been read
+    @FXML
+    void handleLoadFile(ActionEvent event) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Load Array");
+        List<String> raw = new ArrayList<>();
+        for (String extension : ArrayFile.RAW_EXTENSIONS) {
+            raw.add("*" + extension);
         }
+        chooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("Numbers (CSV or one per line)", "*.csv", "*.txt"),
+            new FileChooser.ExtensionFilter("Raw little-endian int32", raw),
+            new FileChooser.ExtensionFilter("All files", "*"));
+        File file = chooser.showOpenDialog(visualizationPane.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        if (loadTask != null) {
+            loadTask.cancel(true);
+        }
+
+        Path path = file.toPath();
+        Task<int[]> task = new Task<>() {
+            @Override
+            protected int[] call() throws IOException {
+                return ArrayFile.load(path, this::updateProgress);
+            }
+        };
+        loadProgress.progressProperty().bind(task.progressProperty());
+        loadProgress.setVisible(true);
+        task.setOnSucceeded(e -> {
+            loadFinished(task);
+            stopSorting();
+            values = task.getValue();
+            distribution = "file";
+            inputSeed = null;
+            showValues();
+            positionLabel.setText("Loaded " + values.length + " values from " + file.getName());
+        });
+        task.setOnFailed(e -> {
+            loadFinished(task);
+            positionLabel.setText("Cannot load " + file.getName() + ": " + task.getException().getMessage());
+        });
+        task.setOnCancelled(e -> loadFinished(task));
+        loadTask = task;
+        Thread thread = new Thread(task, "array-load");
+        thread.setDaemon(true);
+        thread.start();
+    }
 
-        if (rects.isEmpty()) {
+    private void loadFinished(Task<int[]> task) {
+        if (loadTask == task) {
+            loadTask = null;
+            loadProgress.progressProperty().unbind();
+            loadProgress.setVisible(false);
+        }
+    }
+
+    // Metrics of every export are appended here, under the working directory
+    private static final Path RESULTS_LOG = Paths.get("results", "runs.csv");
+
+    @FXML
+    private Button exportBtn;
+
+    // Name the current run was sorted with, and the metrics of its untraced twin once measured
+    private String sortedAlgorithm;
+    private SortMetrics untracedMetrics;
+
+    // Writes the sorted array of the finished run as CSV or raw int32 and appends its metrics to the results
+    // log. The array is streamed from the engine's own copy, so a large run is not held twice.
+    @FXML
+    void handleExport(ActionEvent event) {
+        int[] sorted = sortingAlgorithms != null ? sortingAlgorithms.getSortedValues() : null;
+        SortMetrics traced = sortingAlgorithms != null ? sortingAlgorithms.getMetrics() : null;
+        if (sorted == null || traced == null) {
+            positionLabel.setText("Export is available once a sort has finished");
+            return;
+        }
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Export Sorted Array");
+        List<String> raw = new ArrayList<>();
+        for (String extension : ArrayFile.RAW_EXTENSIONS) {
+            raw.add("*" + extension);
+        }
+        chooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("CSV, one value per line", "*.csv"),
+            new FileChooser.ExtensionFilter("Raw little-endian int32", raw));
+        chooser.setInitialFileName(sortedAlgorithm.replace(' ', '-') + "-" + sorted.length + ".csv");
+        File file = chooser.showSaveDialog(visualizationPane.getScene().getWindow());
+        if (file == null) {
             return;
         }
 
-        if (comparisonsLabel != null && swapsLabel != null) {
-            comparisonsLabel.setText("0");
-            swapsLabel.setText("0");
+        Path path = file.toPath();
+        String algorithm = sortedAlgorithm;
+        String inputDistribution = distribution;
+        Long runSeed = inputSeed;
+        SortMetrics metrics = untracedMetrics != null ? untracedMetrics : traced;
+        boolean untraced = untracedMetrics != null;
+        Task<Void> task = new Task<>() {
+            @Override
+            protected Void call() throws IOException {
+                ArrayFile.save(path, sorted, this::updateProgress);
+                ResultsLog.append(RESULTS_LOG, algorithm, sorted.length, inputDistribution, runSeed, metrics, untraced);
+                return null;
+            }
+        };
+        loadProgress.progressProperty().bind(task.progressProperty());
+        loadProgress.setVisible(true);
+        exportBtn.setDisable(true);
+        task.setOnSucceeded(e -> {
+            exportFinished();
+            positionLabel.setText("Exported to " + file.getName() + ", metrics appended to " + RESULTS_LOG);
+        });
+        task.setOnFailed(e -> {
+            exportFinished();
+            positionLabel.setText("Cannot export: " + task.getException().getMessage());
+        });
+        Thread thread = new Thread(task, "array-export");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void exportFinished() {
+        exportBtn.setDisable(false);
+        if (loadTask == null) {
+            loadProgress.progressProperty().unbind();
+            loadProgress.setVisible(false);
         }
+    }
 
-        sortingAlgorithms = new SortingAlgorithms(rects, labels, timelineDuration);
+    // External sorts from the UI may use a quarter of the heap
+    private static final long EXTERNAL_SORT_MEMORY = Math.max(ExternalSort.DEFAULT_MEMORY,
+        Runtime.getRuntime().maxMemory() / 4);
 
-        Timeline timeline = null;
-        
-        switch (currentAlgorithm) {
-            case "Bubble Sort":
-                timeline = sortingAlgorithms.bubbleSort();
-                break;
-            case "Selection Sort":
-                timeline = sortingAlgorithms.selectionSort();
-                break;
-            case "Insertion Sort":
-                timeline = sortingAlgorithms.insertionSort();
-                break;
-            case "Merge Sort":
-                timeline = sortingAlgorithms.mergeSort();
-                break;
-            case "Quick Sort":
-                timeline = sortingAlgorithms.quickSort();
-                break;
-            default:
-                timeline = sortingAlgorithms.bubbleSort(); // Default to bubble sort
+    @FXML
+    private Button sortFileBtn;
+
+    // Sorts a raw int32 file that may be larger than the heap into another file with ExternalSort, showing
+    // the run and merge stages below the bars. The array on screen is left alone.
+    @FXML
+    void handleSortFile(ActionEvent event) {
+        List<String> raw = new ArrayList<>();
+        for (String extension : ArrayFile.RAW_EXTENSIONS) {
+            raw.add("*" + extension);
+        }
+        FileChooser.ExtensionFilter filter = new FileChooser.ExtensionFilter("Raw little-endian int32", raw);
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Sort File");
+        chooser.getExtensionFilters().add(filter);
+        File input = chooser.showOpenDialog(visualizationPane.getScene().getWindow());
+        if (input == null) {
+            return;
+        }
+        chooser.setTitle("Save Sorted File");
+        chooser.setInitialDirectory(input.getParentFile());
+        chooser.setInitialFileName(input.getName().replaceFirst("(\\.[^.]*)?$", "-sorted$0"));
+        File output = chooser.showSaveDialog(visualizationPane.getScene().getWindow());
+        if (output == null) {
+            return;
         }
+
+        Task<ExternalSort> task = new Task<>() {
+            @Override
+            protected ExternalSort call() throws IOException {
+                return ExternalSort.sort(input.toPath(), output.toPath(), EXTERNAL_SORT_MEMORY,
+                    (stage, done, total) -> {
+                        updateMessage(stage);
+                        updateProgress(done, total);
+                    });
+            }
+        };
+        task.messageProperty().addListener((obs, oldMessage, message) ->
+            positionLabel.setText(message + ": " + input.getName()));
+        loadProgress.progressProperty().bind(task.progressProperty());
+        loadProgress.setVisible(true);
+        sortFileBtn.setDisable(true);
+        task.setOnSucceeded(e -> {
+            sortFileFinished();
+            ExternalSort sorter = task.getValue();
+            positionLabel.setText(String.format("Sorted %s into %s: %d runs, %d merge passes", input.getName(),
+                output.getName(), sorter.getRunCount(), sorter.getPasses()));
+        });
+        task.setOnFailed(e -> {
+            sortFileFinished();
+            positionLabel.setText("Cannot sort " + input.getName() + ": " + task.getException().getMessage());
+        });
+        Thread thread = new Thread(task, "external-sort");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void sortFileFinished() {
+        sortFileBtn.setDisable(false);
+        if (loadTask == null) {
+            loadProgress.progressProperty().unbind();
+            loadProgress.setVisible(false);
+        }
+    }
+
+    @FXML
+    void sort(ActionEvent event) {
+        stopSorting();
+
+        if (bars == null || bars.size() == 0) {
+            return;
+        }
+
+        sortingAlgorithms = newSortingAlgorithms();
+        sortingAlgorithms.setDistribution(distribution);
+        if (recordCheck.isSelected()) {
+            Path path = newTracePath(currentAlgorithm);
+            if (path != null) {
+                sortingAlgorithms.setRecordTo(path);
+                positionLabel.setText("Recording to " + path);
+            }
+        }
+
+        // Shell Sort runs with the gap sequence chosen next to it
+        String algorithm = "Shell Sort".equals(currentAlgorithm)
+            ? SortEngine.shellSortName(gapChoice.getValue()) : currentAlgorithm;
+        Timeline timeline = sortingAlgorithms.sort(algorithm);
+        sortedAlgorithm = algorithm;
         
+        play(timeline);
+
+        measurePhases(algorithm);
+        if ("Parallel Merge Sort".equals(currentAlgorithm)) {
+            measureSpeedup();
+        } else if ("Quick Sort".equals(currentAlgorithm) || "Dual-Pivot Quick Sort".equals(currentAlgorithm)) {
+            compareQuickSorts();
+        } else if ("Shell Sort".equals(currentAlgorithm)) {
+            compareGapSequences();
+        }
+    }
+
+    private SortingAlgorithms newSortingAlgorithms() {
+        SortingAlgorithms algorithms = new SortingAlgorithms(bars, barView, timelineDuration);
+        algorithms.setMetricsChannel(metricsChannel);
+        String mode = modeChoice.getValue();
+        if (mode != null && !STEP_MODE.equals(mode)) {
+            double seconds = FASTEST_MODE.equals(mode) ? 0 : Double.parseDouble(mode.replaceAll("[^0-9]", ""));
+            algorithms.setThroughputMode(true, seconds);
+        }
+        return algorithms;
+    }
+
+    private void play(Timeline timeline) {
         if (timeline != null) {
-            Timeline performanceUpdateTimeline = new Timeline(
-                new KeyFrame(javafx.util.Duration.millis(50), e -> updatePerformanceLabel())
-            );
-            performanceUpdateTimeline.setCycleCount(Timeline.INDEFINITE);
-            
-            timeline.setOnFinished(e -> {
-                performanceUpdateTimeline.stop();
-                updatePerformanceLabel(); // Final update
-            });
-            
             timeline.play();
-            performanceUpdateTimeline.play();
         }
     }
 
-    private void centerRectangles() {
-        double paneWidth = visualizationPane.getWidth();
-        if (paneWidth == 0) {
-            paneWidth = visualizationPane.getParent().getBoundsInLocal().getWidth();
+    // Recorded traces go to the traces directory under the working directory
+    private static final Path TRACE_DIR = Paths.get("traces");
+
+    @FXML
+    private CheckBox recordCheck;
+
+    @FXML
+    private Button openTraceBtn;
+
+    @FXML
+    private Button playPauseBtn;
+
+    @FXML
+    private Button stepBtn;
+
+    @FXML
+    private Slider seekSlider;
+
+    @FXML
+    private Label positionLabel;
+
+    // Steps between seek checkpoints
+    @FXML
+    private ChoiceBox<Integer> checkpointChoice;
+
+    private TraceFile.Reader traceReader;
+    private Path tracePath;
+    private Task<TraceIndex> indexTask;
+    private boolean updatingSeekSlider = false;
+
+    private Path newTracePath(String algorithm) {
+        String time = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        try {
+            Files.createDirectories(TRACE_DIR);
+        } catch (IOException e) {
+            positionLabel.setText("Cannot create " + TRACE_DIR.toAbsolutePath());
+            return null;
         }
+        return TRACE_DIR.resolve(algorithm.replace(' ', '-') + "-" + values.length + "-" + time + TraceFile.EXTENSION);
+    }
 
-        double totalWidth = rects.size() * (W + gap) - gap;
-        double startX = Math.max(0, (paneWidth - totalWidth) / 2);
+    @FXML
+    void handleOpenTrace(ActionEvent event) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Open Sort Trace");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Sort traces", "*" + TraceFile.EXTENSION));
+        if (Files.isDirectory(TRACE_DIR)) {
+            chooser.setInitialDirectory(TRACE_DIR.toFile());
+        }
+        File file = chooser.showOpenDialog(visualizationPane.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
 
-        for (int i = 0; i < rects.size(); i++) {
-            Rectangle rect = rects.get(i);
-            rect.setX(startX + i * (W + gap));
-            rect.setY(50);
+        stopSorting();
+        TraceFile.Reader reader;
+        try {
+            reader = new TraceFile.Reader(file.toPath());
+        } catch (IOException e) {
+            positionLabel.setText("Cannot open " + file.getName() + ": " + e.getMessage());
+            return;
+        }
+        traceReader = reader;
+        tracePath = file.toPath();
+        values = reader.readInitialValues();
+        distribution = "trace";
+        inputSeed = null;
+        showValues();
+        if (Algorithm.getItems().contains(reader.getAlgorithm())) {
+            Algorithm.setValue(reader.getAlgorithm());
+        } else {
+            for (String sequence : SortEngine.GAP_SEQUENCES) {
+                if (reader.getAlgorithm().equals(SortEngine.shellSortName(sequence))) {
+                    Algorithm.setValue("Shell Sort");
+                    gapChoice.setValue(sequence);
+                }
+            }
+        }
 
-            Text label = labels.get(i);
-            label.setText(String.valueOf((int)rect.getHeight()));
-            label.setX(rect.getX() + W / 2 - label.getBoundsInLocal().getWidth() / 2);
-            label.setY(rect.getY() - 5);
+        sortingAlgorithms = newSortingAlgorithms();
+        Timeline timeline = sortingAlgorithms.replay(reader);
+        seekSlider.setMax(Math.max(1, reader.getTotalSteps()));
+        seekSlider.setDisable(false);
+        playPauseBtn.setDisable(false);
+        playPauseBtn.setText("Pause");
+        stepBtn.setDisable(false);
+        play(timeline);
+        buildCheckpoints();
+    }
+
+    // Indexes the open trace in the background with a reader of its own; until that finishes seeking
+    // replays from the start
+    private void buildCheckpoints() {
+        if (indexTask != null) {
+            indexTask.cancel(true);
         }
+        Path path = tracePath;
+        int interval = checkpointChoice.getValue();
+        SortingAlgorithms target = sortingAlgorithms;
+        target.setCheckpoints(null);
+        Task<TraceIndex> task = new Task<>() {
+            @Override
+            protected TraceIndex call() throws IOException {
+                try (TraceFile.Reader reader = new TraceFile.Reader(path)) {
+                    return TraceIndex.build(reader, interval);
+                }
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (sortingAlgorithms == target && traceReader != null) {
+                target.setCheckpoints(task.getValue());
+            }
+        });
+        indexTask = task;
+        Thread thread = new Thread(task, "trace-index");
+        thread.setDaemon(true);
+        thread.start();
     }
-    
+
+    @FXML
+    void handlePlayPause(ActionEvent event) {
+        Timeline timeline = sortingAlgorithms != null ? sortingAlgorithms.getTimeline() : null;
+        if (timeline == null) {
+            return;
+        }
+        if (timeline.getStatus() == Timeline.Status.RUNNING) {
+            timeline.pause();
+            playPauseBtn.setText("Play");
+        } else {
+            timeline.play();
+            playPauseBtn.setText("Pause");
+        }
+    }
+
+    @FXML
+    void handleStep(ActionEvent event) {
+        if (sortingAlgorithms == null || traceReader == null) {
+            return;
+        }
+        sortingAlgorithms.getTimeline().pause();
+        playPauseBtn.setText("Play");
+        sortingAlgorithms.stepOnce();
+    }
+
+    // Seeks while the thumb is dragged once checkpoints exist, otherwise only when it is released or the
+    // track is clicked; positions set during playback are ignored
+    private void initSeekSlider() {
+        checkpointChoice.setItems(FXCollections.observableArrayList(1000, 10000, 100000));
+        checkpointChoice.setValue(10000);
+        checkpointChoice.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal != null && traceReader != null) {
+                buildCheckpoints();
+            }
+        });
+
+        seekSlider.valueChangingProperty().addListener((obs, wasChanging, changing) -> {
+            if (!changing) {
+                seekTo(seekSlider.getValue());
+            }
+        });
+        seekSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
+            if (updatingSeekSlider) {
+                return;
+            }
+            if (!seekSlider.isValueChanging() || (sortingAlgorithms != null && sortingAlgorithms.hasCheckpoints())) {
+                seekTo(newVal.doubleValue());
+            }
+        });
+    }
+
+    private void seekTo(double position) {
+        if (sortingAlgorithms == null || traceReader == null) {
+            return;
+        }
+        sortingAlgorithms.getTimeline().pause();
+        playPauseBtn.setText("Play");
+        sortingAlgorithms.seek((long) position);
+    }
+
+    private void closeTrace() {
+        if (indexTask != null) {
+            indexTask.cancel(true);
+            indexTask = null;
+        }
+        if (traceReader != null) {
+            try {
+                traceReader.close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+            traceReader = null;
+            tracePath = null;
+        }
+        if (seekSlider != null) {
+            seekSlider.setDisable(true);
+            playPauseBtn.setDisable(true);
+            stepBtn.setDisable(true);
+            positionLabel.setText("");
+        }
+    }
+
+    // Untraced twin of the current run; cancelled when the run stops
+    private Task<SortMetrics> phaseTask;
+
+    // Sorts a copy of the current input without a listener off the FX thread, so the phase times are those
+    // of the algorithm and not of the animation
+    private void measurePhases(String algorithm) {
+        int[] input = new int[bars.size()];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = bars.getValue(i);
+        }
+        String phaseDistribution = distribution;
+        SortingAlgorithms target = sortingAlgorithms;
+        SortEngine engine = new SortEngine();
+        engine.setDistribution(phaseDistribution);
+        phaseLabel.setText("Timing an untraced run...");
+        Task<SortMetrics> task = new Task<>() {
+            @Override
+            protected SortMetrics call() {
+                engine.sort(algorithm, input);
+                return engine.getMetrics();
+            }
+
+            @Override
+            protected void cancelled() {
+                engine.cancel();
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (sortingAlgorithms != target) {
+                return;
+            }
+            SortMetrics metrics = task.getValue();
+            untracedMetrics = metrics;
+            String phases = metrics.formatPhases();
+            phaseLabel.setText(String.format("Untraced run: %.1f ms, aux peak %s%s", metrics.getElapsedNanos() / 1e6,
+                SortMetrics.formatBytes(metrics.getPeakAuxBytes()), phases.isEmpty() ? "" : " - " + phases));
+        });
+        phaseTask = task;
+        Thread thread = new Thread(task, "phase-measurement");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Background measurement shown in speedupLabel for the current run; cancelled when the run stops
+    private Task<?> comparisonTask;
+
+    private void startComparison(Task<?> task, String threadName) {
+        cancelComparison();
+        comparisonTask = task;
+        Thread thread = new Thread(task, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void cancelComparison() {
+        if (comparisonTask != null) {
+            comparisonTask.cancel(true);
+            comparisonTask = null;
+        }
+    }
+
+    // Times the parallel merge sort on one worker and on all of them on the current input off the FX thread
+    private void measureSpeedup() {
+        int[] input = new int[bars.size()];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = bars.getValue(i);
+        }
+        SortingAlgorithms target = sortingAlgorithms;
+        speedupLabel.setText("Measuring speedup...");
+        Task<Double> task = new Task<>() {
+            @Override
+            protected Double call() {
+                return ParallelMergeSort.measureSpeedup(input, 5);
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (sortingAlgorithms == target) {
+                speedupLabel.setText(String.format("Speedup vs 1 worker: %.2fx on %d cores",
+                    task.getValue(), ForkJoinPool.commonPool().getParallelism()));
+            }
+        });
+        startComparison(task, "speedup-measurement");
+    }
+
+    // Counts single- and dual-pivot quick sort on copies of the current input off the FX thread
+    private void compareQuickSorts() {
+        int[] input = new int[bars.size()];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = bars.getValue(i);
+        }
+        SortingAlgorithms target = sortingAlgorithms;
+        SortEngine single = new SortEngine();
+        SortEngine dual = new SortEngine();
+        speedupLabel.setText("Counting both quick sorts...");
+        Task<long[]> task = new Task<>() {
+            @Override
+            protected long[] call() {
+                single.sort("Quick Sort", input.clone());
+                dual.sort("Dual-Pivot Quick Sort", input.clone());
+                return new long[] {single.getComparisons(), single.getSwaps(), dual.getComparisons(), dual.getSwaps()};
+            }
+
+            @Override
+            protected void cancelled() {
+                single.cancel();
+                dual.cancel();
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (sortingAlgorithms == target) {
+                long[] counts = task.getValue();
+                speedupLabel.setText(String.format("   Same input - Quick: %d cmp, %d swaps; Dual-Pivot: %d cmp, %d swaps",
+                    counts[0], counts[1], counts[2], counts[3]));
+            }
+        });
+        startComparison(task, "quick-sort-comparison");
+    }
+
+    // Counts Shell sort with every gap sequence on copies of the current input off the FX thread
+    private void compareGapSequences() {
+        int[] input = new int[bars.size()];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = bars.getValue(i);
+        }
+        SortingAlgorithms target = sortingAlgorithms;
+        speedupLabel.setText("Counting all gap sequences...");
+        Task<String> task = new Task<>() {
+            private volatile SortEngine engine;
+
+            @Override
+            protected String call() {
+                StringBuilder text = new StringBuilder("   Same input (cmp/swaps) -");
+                for (String sequence : SortEngine.GAP_SEQUENCES) {
+                    // Set before checking, so a cancel in between reaches this engine
+                    engine = new SortEngine();
+                    if (isCancelled()) {
+                        return null;
+                    }
+                    engine.shellSort(input.clone(), sequence);
+                    text.append(String.format(" %s: %d/%d", sequence, engine.getComparisons(), engine.getSwaps()));
+                }
+                return text.toString();
+            }
+
+            @Override
+            protected void cancelled() {
+                SortEngine running = engine;
+                if (running != null) {
+                    running.cancel();
+                }
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (sortingAlgorithms == target) {
+                speedupLabel.setText(task.getValue());
+            }
+        });
+        startComparison(task, "gap-sequence-comparison");
+    }
+
     private void updateLegend(String algorithm) {
         if (legendBox == null) return;
         legendBox.getChildren().clear();
@@ -393,48 +1171,13 @@ public class Controller {
             return box;
         };
 
-        switch (algorithm) {
-            case "Bubble Sort":
-                legendBox.getChildren().addAll(
-                    legendItem.apply(Color.RED, "Unsorted"),
-                    legendItem.apply(Color.BLUE, "Comparing"),
-                    legendItem.apply(Color.GREEN, "Sorted")
-                );
-                break;
-            case "Selection Sort":
-                legendBox.getChildren().addAll(
-                    legendItem.apply(Color.RED, "Unsorted"),
-                    legendItem.apply(Color.BLUE, "Current/Min"),
-                    legendItem.apply(Color.ORCHID, "New Min"),
-                    legendItem.apply(Color.GREEN, "Sorted")
-                );
-                break;
-            case "Insertion Sort":
-                legendBox.getChildren().addAll(
-                    legendItem.apply(Color.RED, "Unsorted"),
-                    legendItem.apply(Color.GREEN, "Sorted"),
-                    legendItem.apply(Color.BLUE, "Key/Insert"),
-                    legendItem.apply(Color.ORCHID, "Comparing")
-                );
-                break;
-            case "Merge Sort":
-                legendBox.getChildren().addAll(
-                    legendItem.apply(Color.RED, "Unsorted"),
-                    legendItem.apply(Color.BLUE, "Left Subarray"),
-                    legendItem.apply(Color.ORCHID, "Right Subarray"),
-                    legendItem.apply(Color.GREEN, "Merged/Sorted")
-                );
-                break;
-            case "Quick Sort":
-                legendBox.getChildren().addAll(
-                    legendItem.apply(Color.RED, "Unsorted/Partition"),
-                    legendItem.apply(Color.BLUE, "Comparing"),
-                    legendItem.apply(Color.ORCHID, "Pivot"),
-                    legendItem.apply(Color.GREEN, "Sorted")
-                );
-                break;
-            default:
-                legendBox.getChildren().add(legendItem.apply(Color.GRAY, "State"));
+        SortAlgorithm sortAlgorithm = AlgorithmRegistry.get(algorithm);
+        if (sortAlgorithm == null) {
+            legendBox.getChildren().add(legendItem.apply(Color.GRAY, "State"));
+            return;
+        }
+        for (SortAlgorithm.LegendItem item : sortAlgorithm.getLegend()) {
+            legendBox.getChildren().add(legendItem.apply(BarView.colorOf(item.getState()), item.getLabel()));
         }
     }
 }
@@ -0,0 +1,323 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Stream;
+
+// Sorts raw int32 files larger than the heap under a memory budget. The input is read through mapped
+// windows in runs of as many values as the budget holds; each run is sorted in memory and written to a
+// temporary run file next to the output. Groups of runs are then k-way merged through a min-heap of their
+// heads, pass by pass until one run remains, with every run read and the output written through direct
+// buffers that share the budget. Run files are not mapped, so they can be deleted as soon as they are
+// merged on any platform.
+//
+// Usage: java ExternalSort INPUT OUTPUT [--memory 256m]
+public class ExternalSort {
+
+    public static final long DEFAULT_MEMORY = 64L << 20;
+
+    // Smallest buffer per merged run; the budget divided by this bounds the fan-in
+    private static final int MIN_BUFFER = 1 << 16;
+    private static final int MAX_RUN = Integer.MAX_VALUE - 8;
+
+    // Told the stage, e.g. "Forming runs" or "Merge pass 1 of 2", and how many values it has done
+    public interface Listener {
+        void update(String stage, long done, long total);
+    }
+
+    private final long memory;
+    private final Listener listener;
+    private int runCount = 0;
+    private int passes = 0;
+
+    private ExternalSort(long memory, Listener listener) {
+        this.memory = memory;
+        this.listener = listener;
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2 && !(args.length == 4 && args[2].equals("--memory"))) {
+            System.err.println("Usage: java ExternalSort INPUT OUTPUT [--memory 256m]");
+            System.exit(2);
+        }
+        long memory = args.length == 4 ? parseBytes(args[3]) : DEFAULT_MEMORY;
+        long start = System.nanoTime();
+        try {
+            ExternalSort sorter = sort(Paths.get(args[0]), Paths.get(args[1]), memory,
+                (stage, done, total) -> { });
+            System.out.printf(Locale.ROOT, "Sorted %s into %s: %d runs, %d merge passes, %d ms%n", args[0],
+                args[1], sorter.getRunCount(), sorter.getPasses(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Cannot sort " + args[0] + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // e.g. "512k", "256m", "2g" or a plain number of bytes
+    public static long parseBytes(String value) {
+        String text = value.trim().toLowerCase(Locale.ROOT);
+        int shift = 0;
+        switch (text.isEmpty() ? ' ' : text.charAt(text.length() - 1)) {
+            case 'k':
+                shift = 10;
+                break;
+            case 'm':
+                shift = 20;
+                break;
+            case 'g':
+                shift = 30;
+                break;
+            default:
+                break;
+        }
+        if (shift > 0) {
+            text = text.substring(0, text.length() - 1);
+        }
+        return Long.parseLong(text) << shift;
+    }
+
+    // Throws CancellationException when the thread is interrupted; the run files are deleted either way
+    public static ExternalSort sort(Path input, Path output, long memory, Listener listener) throws IOException {
+        if (!ArrayFile.isRaw(input) || !ArrayFile.isRaw(output)) {
+            throw new IOException("External sort reads and writes raw int32 files ("
+                + String.join(", ", ArrayFile.RAW_EXTENSIONS) + ")");
+        }
+        if (memory < 2L * MIN_BUFFER) {
+            throw new IllegalArgumentException("Memory budget below " + (2 * MIN_BUFFER) + " bytes");
+        }
+        ExternalSort sorter = new ExternalSort(memory, listener);
+        Path parent = output.toAbsolutePath().getParent();
+        Path directory = Files.createTempDirectory(parent, "external-sort");
+        try {
+            sorter.mergeRuns(sorter.formRuns(input, output, directory), output, directory);
+        } finally {
+            try (Stream<Path> left = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) left::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(directory);
+        }
+        return sorter;
+    }
+
+    public int getRunCount() {
+        return runCount;
+    }
+
+    public int getPasses() {
+        return passes;
+    }
+
+    // Sorts the input budget by budget into run files; a single run goes straight to the output
+    private List<Path> formRuns(Path input, Path output, Path directory) throws IOException {
+        List<Path> runs = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size % 4 != 0) {
+                throw new IOException(input.getFileName() + " is not a whole number of int32 values (" + size + " bytes)");
+            }
+            long values = size / 4;
+            int[] run = new int[(int) Math.min(values, Math.min(MAX_RUN, memory / 4))];
+            for (long start = 0; start < values || runs.isEmpty(); start += run.length) {
+                checkInterrupted();
+                int length = (int) Math.min(run.length, values - start);
+                IntBuffer ints = channel.map(FileChannel.MapMode.READ_ONLY, 4 * start, 4L * length)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+                ints.get(run, 0, length);
+                Arrays.sort(run, 0, length);
+                Path file = start + length >= values && runs.isEmpty() ? output
+                    : directory.resolve("run-" + runs.size() + ".i32");
+                try (RunWriter writer = new RunWriter(file, (int) Math.min(memory, 1 << 20))) {
+                    for (int i = 0; i < length; i++) {
+                        writer.put(run[i]);
+                    }
+                }
+                runs.add(file);
+                listener.update("Forming runs", start + length, values);
+            }
+        }
+        runCount = runs.size();
+        if (runs.size() == 1) {
+            runs.clear();
+        }
+        return runs;
+    }
+
+    // Merges groups of up to fan-in runs into longer runs until the last merge writes the output. The budget
+    // is shared by the input buffers and the output buffer.
+    private void mergeRuns(List<Path> runs, Path output, Path directory) throws IOException {
+        int fanIn = (int) Math.max(2, Math.min(runs.size(), memory / MIN_BUFFER - 1));
+        int total = 0;
+        for (int left = runs.size(); left > 1; left = (left + fanIn - 1) / fanIn) {
+            total++;
+        }
+        int buffer = (int) Math.min(1 << 30, memory / (fanIn + 1)) & ~3;
+        int created = 0;
+        while (runs.size() > 1) {
+            passes++;
+            String stage = "Merge pass " + passes + " of " + total;
+            long done = 0;
+            long values = 0;
+            for (Path run : runs) {
+                values += Files.size(run) / 4;
+            }
+            List<Path> merged = new ArrayList<>();
+            for (int from = 0; from < runs.size(); from += fanIn) {
+                List<Path> group = runs.subList(from, Math.min(runs.size(), from + fanIn));
+                Path file = runs.size() <= fanIn ? output : directory.resolve("merge-" + created++ + ".i32");
+                done = merge(group, file, buffer, stage, done, values);
+                for (Path run : group) {
+                    Files.delete(run);
+                }
+                merged.add(file);
+            }
+            runs.clear();
+            runs.addAll(merged);
+        }
+        runs.clear();
+    }
+
+    private long merge(List<Path> group, Path file, int buffer, String stage, long done, long total)
+            throws IOException {
+        RunReader[] heap = new RunReader[group.size()];
+        int size = 0;
+        try (RunWriter writer = new RunWriter(file, buffer)) {
+            try {
+                for (Path run : group) {
+                    RunReader reader = new RunReader(run, buffer);
+                    heap[size++] = reader;
+                    if (!reader.advance()) {
+                        heap[--size].close();
+                    }
+                }
+                for (int root = size / 2 - 1; root >= 0; root--) {
+                    siftDown(heap, root, size);
+                }
+                while (size > 0) {
+                    RunReader smallest = heap[0];
+                    writer.put(smallest.head);
+                    if (++done % (buffer / 4) == 0) {
+                        checkInterrupted();
+                        listener.update(stage, done, total);
+                    }
+                    if (!smallest.advance()) {
+                        smallest.close();
+                        heap[0] = heap[--size];
+                    }
+                    siftDown(heap, 0, size);
+                }
+            } finally {
+                for (int k = 0; k < size; k++) {
+                    heap[k].close();
+                }
+            }
+        }
+        listener.update(stage, done, total);
+        return done;
+    }
+
+    // Min-heap of the readers by their head value
+    private static void siftDown(RunReader[] heap, int root, int size) {
+        while (2 * root + 1 < size) {
+            int child = 2 * root + 1;
+            if (child + 1 < size && heap[child + 1].head < heap[child].head) {
+                child++;
+            }
+            if (heap[child].head >= heap[root].head) {
+                return;
+            }
+            RunReader swapped = heap[root];
+            heap[root] = heap[child];
+            heap[child] = swapped;
+            root = child;
+        }
+    }
+
+    private static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+
+    // Reads a run front to back through a direct buffer of the given size
+    private static class RunReader implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        int head;
+
+        RunReader(Path run, int capacity) throws IOException {
+            this.channel = FileChannel.open(run, StandardOpenOption.READ);
+            this.buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+        }
+
+        // Moves head to the next value; false once the run is used up
+        boolean advance() throws IOException {
+            if (buffer.remaining() < 4) {
+                // Runs hold whole values, so a partial value left over is completed by the next read
+                buffer.compact();
+                while (buffer.position() < 4) {
+                    if (channel.read(buffer) < 0) {
+                        buffer.flip();
+                        return false;
+                    }
+                }
+                buffer.flip();
+            }
+            head = buffer.getInt();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // Writes a run through a direct buffer of the given size
+    private static class RunWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        RunWriter(Path file, int capacity) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        void put(int value) throws IOException {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.putInt(value);
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.AnchorPane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+
+// Draws the array as the implicit binary tree heap sort works on: index i has children 2i + 1 and 2i + 2,
+// so level d holds indices 2^d - 1 .. 2^(d+1) - 2. Only as many levels as fit the pane width are drawn;
+// values are written into the nodes when they are large enough.
+public class HeapTreeView implements BarView {
+
+    private static final double TOP = 30;
+    private static final double MIN_SLOT = 4;
+    private static final double MAX_RADIUS = 18;
+    private static final double LABEL_MIN_RADIUS = 10;
+    private static final Color EDGE_COLOR = Color.web("#b0b0b0");
+    private static final Color NOTE_COLOR = Color.web("#27548A");
+    private static final Font LABEL_FONT = Font.font(null, FontWeight.BOLD, 11);
+
+    private final AnchorPane pane;
+    private final Canvas canvas = new Canvas();
+    private final BarState state;
+
+    // Geometry of the last layout
+    private int levels;
+    private int shown;
+    private double levelHeight;
+
+    public HeapTreeView(AnchorPane pane, BarState state) {
+        this.pane = pane;
+        this.state = state;
+        pane.getChildren().add(canvas);
+        layout();
+    }
+
+    @Override
+    public void layout() {
+        canvas.setWidth(pane.getWidth());
+        canvas.setHeight(pane.getHeight());
+        int n = state.size();
+        int depth = 32 - Integer.numberOfLeadingZeros(n);
+        int fitting = 1;
+        while (fitting < 31 && canvas.getWidth() / (1 << fitting) >= MIN_SLOT) {
+            fitting++;
+        }
+        levels = Math.min(depth, fitting);
+        shown = (int) Math.min(n, (1L << levels) - 1);
+        levelHeight = levels > 1 ? Math.max(0, canvas.getHeight() - TOP - 2 * MAX_RADIUS) / (levels - 1) : 0;
+        draw();
+    }
+
+    // A swap usually moves a node and its parent, so the whole tree is redrawn; it never has more nodes
+    // than about twice the pane width
+    @Override
+    public void render() {
+        if (state.getDirtyCount() > 0) {
+            draw();
+        }
+    }
+
+    private void draw() {
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        g.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if (shown < state.size()) {
+            g.setFill(NOTE_COLOR);
+            g.setFont(LABEL_FONT);
+            g.setTextAlign(TextAlignment.LEFT);
+            g.setTextBaseline(VPos.TOP);
+            g.fillText("First " + levels + " levels (" + shown + " of " + state.size() + " elements)", 0, 0);
+        }
+
+        g.setStroke(EDGE_COLOR);
+        g.setLineWidth(1);
+        for (int i = 1; i < shown; i++) {
+            int parent = (i - 1) / 2;
+            g.strokeLine(x(i), y(i), x(parent), y(parent));
+        }
+        g.setFont(LABEL_FONT);
+        g.setTextAlign(TextAlignment.CENTER);
+        g.setTextBaseline(VPos.CENTER);
+        for (int i = 0; i < shown; i++) {
+            double r = radius(i);
+            g.setFill(BarView.colorOf(state.getState(i)));
+            g.fillOval(x(i) - r, y(i) - r, 2 * r, 2 * r);
+            if (r >= LABEL_MIN_RADIUS) {
+                g.setFill(Color.WHITE);
+                g.fillText(String.valueOf(state.getValue(i)), x(i), y(i));
+            }
+        }
+        state.clearDirty();
+    }
+
+    private static int level(int i) {
+        return 31 - Integer.numberOfLeadingZeros(i + 1);
+    }
+
+    private double x(int i) {
+        int d = level(i);
+        return (i + 1 - (1 << d) + 0.5) * canvas.getWidth() / (1 << d);
+    }
+
+    private double y(int i) {
+        return TOP + MAX_RADIUS + level(i) * levelHeight;
+    }
+
+    private double radius(int i) {
+        double slot = canvas.getWidth() / (1 << level(i));
+        return Math.max(1, Math.min(MAX_RADIUS, Math.min(slot, levelHeight > 0 ? levelHeight : slot) * 0.4));
+    }
+}
@@ -0,0 +1,156 @@
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+// Generates input arrays for the sorting algorithms from a seed, so every run can be reproduced. The array is
+// filled in chunks of CHUNK elements, each from its own SplittableRandom split off the seeded one in chunk
+// order; large arrays fill their chunks in parallel and still get exactly the values a sequential fill
+// would give.
+public class InputGenerator {
+
+    public static final String[] DISTRIBUTIONS = {
+        "uniform",
+        "sorted",
+        "reversed",
+        "nearly-sorted",
+        "few-unique",
+        "organ-pipe",
+        "sawtooth",
+        "zipf",
+        "gaussian"
+    };
+
+    private static final int CHUNK = 1 << 16;
+    // Below this size the fork/join overhead outweighs the parallel fill
+    private static final int PARALLEL_THRESHOLD = 1 << 20;
+    private static final int FEW_UNIQUE_VALUES = 8;
+    // Zipf: distinct values, and the exponent s of P(rank k) ~ 1 / k^s
+    private static final int ZIPF_VALUES = 1024;
+    private static final double ZIPF_EXPONENT = 1.0;
+
+    // Fills an array of n values in [0, maxValue) following the named distribution. "nearly-sorted" swaps
+    // n / 100 random pairs of a sorted array; "nearly-sorted:K" swaps K pairs. "random" is accepted for
+    // "uniform".
+    public static int[] generate(String distribution, int n, int maxValue, long seed) {
+        SplittableRandom root = new SplittableRandom(seed);
+        int[] a = new int[n];
+        String name = distribution;
+        int swaps = Math.max(1, n / 100);
+        if (distribution.startsWith("nearly-sorted:")) {
+            name = "nearly-sorted";
+            swaps = Integer.parseInt(distribution.substring("nearly-sorted:".length()));
+        }
+        switch (name) {
+            case "random":
+            case "uniform":
+                fill(a, root, (random, i) -> random.nextInt(maxValue));
+                break;
+            case "sorted":
+                fill(a, root, (random, i) -> (int) ((long) i * maxValue / n));
+                break;
+            case "reversed":
+                fill(a, root, (random, i) -> (int) ((long) (n - 1 - i) * maxValue / n));
+                break;
+            case "nearly-sorted":
+                fill(a, root, (random, i) -> (int) ((long) i * maxValue / n));
+                // The swaps are few and drawn after the fill, from a generator of their own
+                SplittableRandom swapper = root.split();
+                for (int k = 0; k < swaps && n > 1; k++) {
+                    int i = swapper.nextInt(n);
+                    int j = swapper.nextInt(n);
+                    int temp = a[i];
+                    a[i] = a[j];
+                    a[j] = temp;
+                }
+                break;
+            case "few-unique":
+                int distinct = Math.max(1, Math.min(maxValue, FEW_UNIQUE_VALUES));
+                fill(a, root, (random, i) -> random.nextInt(distinct) * (maxValue / distinct));
+                break;
+            case "organ-pipe":
+                // Ascending to the middle, then descending
+                fill(a, root, (random, i) -> (int) ((long) Math.min(i, n - 1 - i) * 2 * maxValue / n));
+                break;
+            case "sawtooth":
+                // Ascending runs of about sqrt(n) elements, each starting over at 0
+                int run = Math.max(1, (int) Math.sqrt(n));
+                fill(a, root, (random, i) -> (int) ((long) (i % run) * maxValue / run));
+                break;
+            case "zipf":
+                double[] cdf = zipfCdf(Math.max(1, Math.min(maxValue, ZIPF_VALUES)));
+                int[] guide = guideTable(cdf);
+                int step = Math.max(1, maxValue / cdf.length);
+                fill(a, root, (random, i) -> zipfRank(cdf, guide, random.nextDouble()) * step);
+                break;
+            case "gaussian":
+                // Centered on maxValue / 2 with a standard deviation of maxValue / 8, clamped to the range
+                double mean = maxValue / 2.0;
+                double deviation = maxValue / 8.0;
+                fill(a, root, (random, i) -> (int) Math.max(0, Math.min(maxValue - 1,
+                    Math.round(mean + deviation * random.nextGaussian()))));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown distribution: " + distribution);
+        }
+        return a;
+    }
+
+    private interface ValueFunction {
+        int valueAt(SplittableRandom random, int index);
+    }
+
+    private static void fill(int[] a, SplittableRandom root, ValueFunction values) {
+        int chunks = (a.length + CHUNK - 1) / CHUNK;
+        SplittableRandom[] randoms = new SplittableRandom[chunks];
+        for (int c = 0; c < chunks; c++) {
+            randoms[c] = root.split();
+        }
+        IntStream range = IntStream.range(0, chunks);
+        if (a.length >= PARALLEL_THRESHOLD) {
+            range = range.parallel();
+        }
+        range.forEach(c -> {
+            SplittableRandom random = randoms[c];
+            int end = Math.min(a.length, (c + 1) * CHUNK);
+            for (int i = c * CHUNK; i < end; i++) {
+                a[i] = values.valueAt(random, i);
+            }
+        });
+    }
+
+    // Cumulative probabilities of the ranks 1..values
+    private static double[] zipfCdf(int values) {
+        double[] cdf = new double[values];
+        double sum = 0;
+        for (int k = 0; k < values; k++) {
+            sum += 1 / Math.pow(k + 1, ZIPF_EXPONENT);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < values; k++) {
+            cdf[k] /= sum;
+        }
+        return cdf;
+    }
+
+    // guide[g] is the first rank index whose cumulative probability reaches g / guide.length, so a sample
+    // only scans the few ranks between two guide entries instead of binary searching all of them
+    private static int[] guideTable(double[] cdf) {
+        int[] guide = new int[cdf.length];
+        int k = 0;
+        for (int g = 0; g < guide.length; g++) {
+            while (cdf[k] < (double) g / guide.length) {
+                k++;
+            }
+            guide[g] = k;
+        }
+        return guide;
+    }
+
+    // Smallest rank index whose cumulative probability reaches u, for u in [0, 1)
+    private static int zipfRank(double[] cdf, int[] guide, double u) {
+        int k = guide[(int) (u * guide.length)];
+        while (cdf[k] < u) {
+            k++;
+        }
+        return k;
+    }
+}
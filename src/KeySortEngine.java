@@ -0,0 +1,398 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// SortEngine's algorithms for keys wider than an int: long keys, double keys and records of a key with an
+// int payload, e.g. the record's index, kept in a parallel array and moved along with its key. Nothing is
+// boxed. There is no listener; these runs are measured by Benchmark --keys, not animated.
+//
+// Insertion, Merge, Quick and Heap Sort follow their namesakes in SortEngine step for step and count the
+// same comparisons, swaps, writes and reads on the same input, so those runs differ from int runs only in
+// the bytes moved and the scratch memory. LSD Radix Sort takes up to eight byte passes instead of four, so
+// its reads, writes and bytes moved grow with the key width.
+//
+// The algorithms are copied rather than shared with SortEngine through an accessor for the element type:
+// that would put a virtual call behind every comparison and move in SortEngine's loops, which are the ones
+// the visualizer animates and the benchmarks measure, only to serve these wider keys.
+//
+// Double keys are sorted as their sortable bits: the IEEE 754 bits with all but the sign bit flipped for
+// negative values order as signed longs exactly like Double.compare, so -0.0 comes before 0.0 and NaN after
+// positive infinity. NaNs come out as the canonical NaN.
+public class KeySortEngine {
+
+    // The SortEngine algorithms available here; the stable ones keep records with equal keys in order
+    public static final String[] ALGORITHMS = {"Insertion Sort", "Merge Sort", "Quick Sort", "Heap Sort",
+        "LSD Radix Sort"};
+
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    private long[] k;
+    // Moved with the keys when sorting records, null otherwise
+    private int[] payload;
+    // Bytes one element occupies: 8 for a key, 12 with its payload
+    private int width;
+    private long comparisons = 0;
+    private long swaps = 0;
+    private long writes = 0;
+    private long reads = 0;
+    private long bytesMoved = 0;
+    private long auxBytes = 0;
+    private long peakAuxBytes = 0;
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    private String phase;
+    private long phaseStart;
+    private long elapsedNanos = 0;
+
+    public static boolean supports(String algorithm) {
+        return Arrays.asList(ALGORITHMS).contains(algorithm);
+    }
+
+    public static boolean isStable(String algorithm) {
+        return !algorithm.equals("Quick Sort") && !algorithm.equals("Heap Sort");
+    }
+
+    public long getComparisons() {
+        return comparisons;
+    }
+
+    public SortMetrics getMetrics() {
+        return new SortMetrics(comparisons, swaps, writes, reads, bytesMoved, peakAuxBytes, elapsedNanos, phaseNanos);
+    }
+
+    public void sort(String algorithm, long[] keys) {
+        run(algorithm, keys, null);
+    }
+
+    // Sorts records by key; payload[i] belongs to keys[i] before and after
+    public void sort(String algorithm, long[] keys, int[] payload) {
+        if (payload.length != keys.length) {
+            throw new IllegalArgumentException("Payload of " + payload.length + " for " + keys.length + " keys");
+        }
+        run(algorithm, keys, payload);
+    }
+
+    public void sort(String algorithm, double[] keys) {
+        sort(algorithm, keys, null);
+    }
+
+    // The sortable bits are sorted in a scratch long array, which counts toward the peak auxiliary memory
+    public void sort(String algorithm, double[] keys, int[] payload) {
+        long start = System.nanoTime();
+        long[] bits = allocateLongs(keys.length);
+        phase("encode keys");
+        for (int i = 0; i < keys.length; i++) {
+            bits[i] = sortableBits(keys[i]);
+        }
+        long encoded = System.nanoTime();
+        endPhase(encoded);
+        if (payload == null) {
+            run(algorithm, bits, null);
+        } else {
+            sort(algorithm, bits, payload);
+        }
+        long sorted = System.nanoTime();
+        phase("decode keys");
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = fromSortableBits(bits[i]);
+        }
+        endPhase(System.nanoTime());
+        releaseLongs(bits);
+        elapsedNanos += (encoded - start) + (System.nanoTime() - sorted);
+    }
+
+    // Long whose signed order is the order of Double.compare
+    public static long sortableBits(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    public static double fromSortableBits(long bits) {
+        return Double.longBitsToDouble(bits ^ ((bits >> 63) & Long.MAX_VALUE));
+    }
+
+    // Whether records whose payload started out as their index kept that order among equal keys
+    public static boolean keptOrder(long[] keys, int[] payload) {
+        for (int i = 1; i < keys.length; i++) {
+            if (keys[i - 1] == keys[i] && payload[i - 1] > payload[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void run(String algorithm, long[] keys, int[] records) {
+        k = keys;
+        payload = records;
+        width = records == null ? 8 : 12;
+        long start = System.nanoTime();
+        try {
+            switch (algorithm) {
+                case "Insertion Sort":
+                    insertionSort();
+                    break;
+                case "Merge Sort":
+                    mergeSort();
+                    break;
+                case "Quick Sort":
+                    quickSort();
+                    break;
+                case "Heap Sort":
+                    heapSort();
+                    break;
+                case "LSD Radix Sort":
+                    lsdRadixSort();
+                    break;
+                default:
+                    throw new IllegalArgumentException(algorithm + " has no long, double or record variant");
+            }
+        } finally {
+            long end = System.nanoTime();
+            endPhase(end);
+            elapsedNanos += end - start;
+        }
+    }
+
+    private void insertionSort() {
+        for (int i = 1; i < k.length; i++) {
+            for (int j = i; j > 0 && greater(j - 1, j); j--) {
+                swap(j - 1, j);
+            }
+        }
+    }
+
+    // Bottom-up, copying each segment into scratch arrays and merging it back; ties take the left run first
+    private void mergeSort() {
+        int n = k.length;
+        long[] temp = allocateLongs(n);
+        int[] tempPayload = payload == null ? null : allocateInts(n);
+        for (int size = 1; size < n; size *= 2) {
+            phase("merge width " + size);
+            for (int left = 0; left < n - size; left += 2 * size) {
+                int mid = left + size;
+                int end = Math.min(left + 2 * size - 1, n - 1);
+                copyToTemp(temp, tempPayload, left, end - left + 1);
+                int li = left;
+                int ri = mid;
+                for (int i = left; i <= end; i++) {
+                    int from = li < mid && (ri > end || compareValues(temp[li], temp[ri]) <= 0) ? li++ : ri++;
+                    write(i, load(temp, from), tempPayload, from);
+                }
+            }
+        }
+        releaseLongs(temp);
+        releaseInts(tempPayload);
+    }
+
+    // Lomuto partitioning around the last element, driven by an explicit stack of ranges
+    private void quickSort() {
+        phase("partition");
+        int[] stack = allocateInts(64);
+        int top = 0;
+        if (k.length > 0) {
+            stack[top++] = 0;
+            stack[top++] = k.length - 1;
+        }
+        while (top > 0) {
+            int hi = stack[--top];
+            int lo = stack[--top];
+            if (lo >= hi) {
+                continue;
+            }
+            int p = lo - 1;
+            for (int j = lo; j < hi; j++) {
+                if (greater(hi, j)) {
+                    p++;
+                    swap(p, j);
+                }
+            }
+            p++;
+            swap(p, hi);
+            if (top + 4 > stack.length) {
+                int[] grown = allocateInts(stack.length * 2);
+                System.arraycopy(stack, 0, grown, 0, stack.length);
+                releaseInts(stack);
+                stack = grown;
+            }
+            if (p + 1 <= hi) {
+                stack[top++] = p + 1;
+                stack[top++] = hi;
+            }
+            if (lo <= p - 1) {
+                stack[top++] = lo;
+                stack[top++] = p - 1;
+            }
+        }
+        releaseInts(stack);
+    }
+
+    private void heapSort() {
+        int n = k.length;
+        phase("build heap");
+        for (int root = n / 2 - 1; root >= 0; root--) {
+            siftDown(root, n);
+        }
+        phase("sift down");
+        for (int end = n - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+    }
+
+    private void siftDown(int root, int size) {
+        while (2 * root + 1 < size) {
+            int child = 2 * root + 1;
+            if (child + 1 < size && greater(child + 1, child)) {
+                child++;
+            }
+            if (!greater(child, root)) {
+                return;
+            }
+            swap(root, child);
+            root = child;
+        }
+    }
+
+    // Byte-wise like SortEngine's, over eight digits instead of four
+    private void lsdRadixSort() {
+        int n = k.length;
+        long[] temp = allocateLongs(n);
+        int[] tempPayload = payload == null ? null : allocateInts(n);
+        int[] count = allocateInts(RADIX + 1);
+        for (int shift = 0; shift < 64; shift += RADIX_BITS) {
+            phase("histogram");
+            Arrays.fill(count, 0);
+            for (int i = 0; i < n; i++) {
+                count[digit(read(i), shift) + 1]++;
+            }
+            if (isSingleBucket(count, n)) {
+                continue;
+            }
+            phase("prefix sums");
+            for (int d = 0; d < RADIX; d++) {
+                count[d + 1] += count[d];
+            }
+            phase("scatter");
+            copyToTemp(temp, tempPayload, 0, n);
+            for (int i = 0; i < n; i++) {
+                long key = load(temp, i);
+                write(count[digit(key, shift)]++, key, tempPayload, i);
+            }
+        }
+        releaseLongs(temp);
+        releaseInts(tempPayload);
+        releaseInts(count);
+    }
+
+    // The digit of key at shift; the sign bit is flipped in the top byte so negative keys come first
+    private static int digit(long key, int shift) {
+        int d = (int) (key >>> shift) & (RADIX - 1);
+        return shift == 64 - RADIX_BITS ? d ^ (RADIX >>> 1) : d;
+    }
+
+    private static boolean isSingleBucket(int[] count, int size) {
+        for (int d = 1; d < count.length; d++) {
+            if (count[d] == size) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean greater(int i, int j) {
+        comparisons++;
+        reads += 2;
+        return k[i] > k[j];
+    }
+
+    private int compareValues(long x, long y) {
+        comparisons++;
+        reads += 2;
+        return Long.compare(x, y);
+    }
+
+    private void swap(int i, int j) {
+        long key = k[i];
+        k[i] = k[j];
+        k[j] = key;
+        if (payload != null) {
+            int value = payload[i];
+            payload[i] = payload[j];
+            payload[j] = value;
+        }
+        swaps++;
+        bytesMoved += 2 * width;
+    }
+
+    private long read(int index) {
+        reads++;
+        return k[index];
+    }
+
+    // Counts loading a key from scratch that is about to be written back, as SortEngine.load does
+    private long load(long[] source, int index) {
+        reads++;
+        return source[index];
+    }
+
+    // Writes key to index, with the payload held at from in tempPayload
+    private void write(int index, long key, int[] tempPayload, int from) {
+        k[index] = key;
+        if (payload != null) {
+            payload[index] = tempPayload[from];
+        }
+        writes++;
+        bytesMoved += width;
+    }
+
+    private void copyToTemp(long[] temp, int[] tempPayload, int from, int length) {
+        System.arraycopy(k, from, temp, from, length);
+        reads += length;
+        if (payload != null) {
+            System.arraycopy(payload, from, tempPayload, from, length);
+        }
+        bytesMoved += (long) width * length;
+    }
+
+    private void phase(String name) {
+        if (name.equals(phase)) {
+            return;
+        }
+        long now = System.nanoTime();
+        endPhase(now);
+        phase = name;
+        phaseStart = now;
+    }
+
+    private void endPhase(long now) {
+        if (phase != null) {
+            phaseNanos.merge(phase, now - phaseStart, Long::sum);
+            phase = null;
+        }
+    }
+
+    private long[] allocateLongs(int length) {
+        track(8L * length);
+        return new long[length];
+    }
+
+    private void releaseLongs(long[] array) {
+        track(-8L * array.length);
+    }
+
+    private int[] allocateInts(int length) {
+        track(4L * length);
+        return new int[length];
+    }
+
+    private void releaseInts(int[] array) {
+        if (array != null) {
+            track(-4L * array.length);
+        }
+    }
+
+    private void track(long bytes) {
+        auxBytes += bytes;
+        peakAuxBytes = Math.max(peakAuxBytes, auxBytes);
+    }
+}
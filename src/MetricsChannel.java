@@ -0,0 +1,110 @@
+import javafx.application.Platform;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+// Hands counter snapshots to a consumer on the FX thread. Publishing only replaces the latest snapshot;
+// one delivery is scheduled for any number of publications in between, and it is skipped when the
+// snapshot equals the one delivered last. Nothing runs while nobody publishes.
+public class MetricsChannel {
+
+    private final Consumer<Snapshot> consumer;
+    private final AtomicReference<Snapshot> latest = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    // FX thread only
+    private Snapshot delivered;
+
+    public MetricsChannel(Consumer<Snapshot> consumer) {
+        this.consumer = consumer;
+    }
+
+    // May be called on any thread
+    public void publish(Snapshot snapshot) {
+        latest.set(snapshot);
+        if (scheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::deliver);
+        }
+    }
+
+    // Drops a pending snapshot and forgets the delivered one, e.g. when the run it belongs to is stopped.
+    // FX thread only.
+    public void reset() {
+        latest.set(null);
+        delivered = null;
+    }
+
+    private void deliver() {
+        scheduled.set(false);
+        Snapshot snapshot = latest.get();
+        if (snapshot != null && !snapshot.equals(delivered)) {
+            delivered = snapshot;
+            consumer.accept(snapshot);
+        }
+    }
+
+    // Counters of the replayed steps, whether seeking uses checkpoints and the engine's metrics once the
+    // live run has finished
+    public static class Snapshot {
+        private final long comparisons;
+        private final long swaps;
+        private final long writes;
+        private final long reads;
+        private final boolean checkpoints;
+        private final SortMetrics metrics;
+
+        public Snapshot(long comparisons, long swaps, long writes, long reads, boolean checkpoints,
+                        SortMetrics metrics) {
+            this.comparisons = comparisons;
+            this.swaps = swaps;
+            this.writes = writes;
+            this.reads = reads;
+            this.checkpoints = checkpoints;
+            this.metrics = metrics;
+        }
+
+        public long getComparisons() {
+            return comparisons;
+        }
+
+        public long getSwaps() {
+            return swaps;
+        }
+
+        public long getWrites() {
+            return writes;
+        }
+
+        public long getReads() {
+            return reads;
+        }
+
+        // Compare/swap/write/read steps replayed so far
+        public long getPosition() {
+            return comparisons + swaps + writes + reads;
+        }
+
+        public boolean hasCheckpoints() {
+            return checkpoints;
+        }
+
+        public SortMetrics getMetrics() {
+            return metrics;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Snapshot)) {
+                return false;
+            }
+            Snapshot that = (Snapshot) other;
+            return comparisons == that.comparisons && swaps == that.swaps && writes == that.writes
+                && reads == that.reads && checkpoints == that.checkpoints && metrics == that.metrics;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(comparisons, swaps, writes, reads, checkpoints, System.identityHashCode(metrics));
+        }
+    }
+}
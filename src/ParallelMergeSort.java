@@ -0,0 +1,308 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Fork/join merge sort. The array is split recursively until each piece is small enough to be sorted
+// sequentially, then sibling pieces are merged in parallel. Merges of large ranges are themselves split
+// along the merge path, so the final merges also use every core instead of a single thread.
+//
+// When a listener is attached every step is reported from the worker that performed it and each
+// worker's segments are marked with its own lane state (SortEngine.LANE + worker index).
+public class ParallelMergeSort {
+
+    private static final int MIN_LEAF = 4096;
+    private static final int INSERTION_CUTOFF = 16;
+    private static final int MIN_MERGE_SEGMENT = 4096;
+
+    private final ForkJoinPool pool;
+    private final SortListener listener;
+    private final AtomicLong comparisons = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private int[] a;
+    private int[] temp;
+    private int leafSize;
+    private int minSegment;
+
+    public ParallelMergeSort(SortListener listener) {
+        this(ForkJoinPool.commonPool(), listener);
+    }
+
+    public ParallelMergeSort(ForkJoinPool pool, SortListener listener) {
+        this.pool = pool;
+        this.listener = listener == null ? null : synchronizedListener(listener);
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public long getComparisons() {
+        return comparisons.get();
+    }
+
+    public long getWrites() {
+        return writes.get();
+    }
+
+    public void sort(int[] array) {
+        a = array;
+        temp = new int[array.length];
+        int parallelism = pool.getParallelism();
+        // Small traced inputs are still split so that every worker gets a lane to show
+        int smallest = listener == null ? MIN_LEAF : 2;
+        leafSize = Math.max(smallest, array.length / (4 * parallelism));
+        minSegment = listener == null ? MIN_MERGE_SEGMENT : 2;
+        if (array.length > 1) {
+            pool.invoke(new SortTask(0, array.length));
+        }
+        if (listener != null && array.length > 0) {
+            listener.mark(0, array.length - 1, SortEngine.SORTED);
+        }
+        temp = null;
+    }
+
+    // Best-of-repeats wall time of this sort on a single worker divided by that on the common pool. Both
+    // runs are uninstrumented and use the same leaves, so only the parallelism differs. Throws
+    // CancellationException between repeats once the thread is interrupted.
+    public static double measureSpeedup(int[] input, int repeats) {
+        long sequential = Long.MAX_VALUE;
+        long parallel = Long.MAX_VALUE;
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            for (int r = 0; r < repeats; r++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException();
+                }
+                int[] copy = input.clone();
+                long start = System.nanoTime();
+                new ParallelMergeSort(single, null).sort(copy);
+                sequential = Math.min(sequential, System.nanoTime() - start);
+
+                copy = input.clone();
+                start = System.nanoTime();
+                new ParallelMergeSort(null).sort(copy);
+                parallel = Math.min(parallel, System.nanoTime() - start);
+            }
+        } finally {
+            single.shutdown();
+        }
+        return (double) sequential / Math.max(1, parallel);
+    }
+
+    // Tasks are never serialized
+    @SuppressWarnings("serial")
+    private class SortTask extends RecursiveAction {
+        private final int lo;
+        private final int hi;
+
+        SortTask(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= leafSize) {
+                mark(lo, hi - 1, lane());
+                sortLeaf(lo, hi);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new SortTask(lo, mid), new SortTask(mid, hi));
+            parallelMerge(lo, mid, hi);
+        }
+    }
+
+    // Merges the sorted ranges [lo, mid) and [mid, hi) through temp, split into independent
+    // merge-path segments when the range is large enough. The tasks, like SortTask, are never serialized.
+    @SuppressWarnings("serial")
+    private void parallelMerge(int lo, int mid, int hi) {
+        int total = hi - lo;
+        int pieces = Math.max(1, Math.min(pool.getParallelism(), total / minSegment));
+        if (pieces == 1) {
+            mark(lo, hi - 1, lane());
+            merge(lo, mid, mid, hi, lo);
+            copyBack(lo, hi);
+            return;
+        }
+
+        List<RecursiveAction> merges = new ArrayList<>(pieces);
+        List<RecursiveAction> copies = new ArrayList<>(pieces);
+        int previousDiagonal = 0;
+        int previousSplit = 0;
+        for (int p = 1; p <= pieces; p++) {
+            int diagonal = (int) ((long) total * p / pieces);
+            int split = p == pieces ? mid - lo : coRank(diagonal, lo, mid, hi);
+            int leftFrom = lo + previousSplit;
+            int leftTo = lo + split;
+            int rightFrom = mid + (previousDiagonal - previousSplit);
+            int rightTo = mid + (diagonal - split);
+            int out = lo + previousDiagonal;
+            int outEnd = lo + diagonal;
+            merges.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    mark(out, outEnd - 1, lane());
+                    merge(leftFrom, leftTo, rightFrom, rightTo, out);
+                }
+            });
+            copies.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    copyBack(out, outEnd);
+                }
+            });
+            previousDiagonal = diagonal;
+            previousSplit = split;
+        }
+        // Segments may read input that another segment's output overwrites, so copy back only after all merges
+        RecursiveAction.invokeAll(merges);
+        RecursiveAction.invokeAll(copies);
+    }
+
+    // Number of elements taken from the left run among the first `diagonal` outputs of a stable merge
+    private int coRank(int diagonal, int lo, int mid, int hi) {
+        int leftLength = mid - lo;
+        int rightLength = hi - mid;
+        int low = Math.max(0, diagonal - rightLength);
+        int high = Math.min(diagonal, leftLength);
+        long compared = 0;
+        while (low < high) {
+            int i = (low + high) >>> 1;
+            int j = diagonal - i;
+            compared++;
+            // The left element wins ties, so it belongs in front of the diagonal when it is <= the right one
+            if (a[lo + i] <= a[mid + j - 1]) {
+                low = i + 1;
+            } else {
+                high = i;
+            }
+        }
+        comparisons.addAndGet(compared);
+        return low;
+    }
+
+    private void sortLeaf(int lo, int hi) {
+        long compared = 0;
+        long written = 0;
+        for (int start = lo; start < hi; start += INSERTION_CUTOFF) {
+            int end = Math.min(start + INSERTION_CUTOFF, hi);
+            for (int i = start + 1; i < end; i++) {
+                int key = a[i];
+                int j = i - 1;
+                while (j >= start) {
+                    compared++;
+                    report(j, j + 1);
+                    if (a[j] <= key) {
+                        break;
+                    }
+                    write(j + 1, a[j]);
+                    written++;
+                    j--;
+                }
+                if (j + 1 != i) {
+                    write(j + 1, key);
+                    written++;
+                }
+            }
+        }
+        comparisons.addAndGet(compared);
+        writes.addAndGet(written);
+        for (int width = INSERTION_CUTOFF; width < hi - lo; width *= 2) {
+            for (int left = lo; left < hi - width; left += 2 * width) {
+                int mid = left + width;
+                int end = Math.min(left + 2 * width, hi);
+                merge(left, mid, mid, end, left);
+                copyBack(left, end);
+            }
+        }
+    }
+
+    // Stable merge of a[leftFrom, leftTo) and a[rightFrom, rightTo) into temp starting at out
+    private void merge(int leftFrom, int leftTo, int rightFrom, int rightTo, int out) {
+        int li = leftFrom;
+        int ri = rightFrom;
+        long compared = 0;
+        while (li < leftTo && ri < rightTo) {
+            compared++;
+            report(li, ri);
+            temp[out++] = a[li] <= a[ri] ? a[li++] : a[ri++];
+        }
+        while (li < leftTo) {
+            temp[out++] = a[li++];
+        }
+        while (ri < rightTo) {
+            temp[out++] = a[ri++];
+        }
+        comparisons.addAndGet(compared);
+    }
+
+    private void copyBack(int from, int to) {
+        writes.addAndGet(to - from);
+        if (listener == null) {
+            System.arraycopy(temp, from, a, from, to - from);
+            return;
+        }
+        for (int k = from; k < to; k++) {
+            write(k, temp[k]);
+        }
+    }
+
+    private void write(int index, int value) {
+        a[index] = value;
+        if (listener != null) {
+            listener.write(index, value);
+        }
+    }
+
+    private void report(int i, int j) {
+        if (listener != null) {
+            listener.compare(i, j);
+        }
+    }
+
+    private void mark(int from, int to, byte state) {
+        if (listener != null && from <= to) {
+            listener.mark(from, to, state);
+        }
+    }
+
+    private static byte lane() {
+        Thread thread = Thread.currentThread();
+        int worker = thread instanceof ForkJoinWorkerThread ? ((ForkJoinWorkerThread) thread).getPoolIndex() : 0;
+        return (byte) (SortEngine.LANE + worker % SortEngine.LANES);
+    }
+
+    private static SortListener synchronizedListener(SortListener listener) {
+        return new SortListener() {
+            @Override
+            public synchronized void compare(int i, int j) {
+                listener.compare(i, j);
+            }
+
+            @Override
+            public synchronized void swap(int i, int j) {
+                listener.swap(i, j);
+            }
+
+            @Override
+            public synchronized void write(int index, int value) {
+                listener.write(index, value);
+            }
+
+            @Override
+            public synchronized void read(int index) {
+                listener.read(index);
+            }
+
+            @Override
+            public synchronized void mark(int from, int to, byte state) {
+                listener.mark(from, to, state);
+            }
+        };
+    }
+}
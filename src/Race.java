@@ -0,0 +1,138 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs several algorithms at once on identical copies of one input, each on its own platform thread so the
+// OS spreads them over the available cores. The racers sort their arrays in place; a view may read those
+// arrays and the counters at any time to draw the race while it runs.
+public class Race {
+
+    private final List<Racer> racers = new ArrayList<>();
+    private final AtomicInteger finished = new AtomicInteger();
+    private final AtomicInteger ranked = new AtomicInteger();
+
+    public Race(List<String> algorithms, int[] input) {
+        for (String algorithm : algorithms) {
+            racers.add(new Racer(algorithm, input.clone()));
+        }
+    }
+
+    public List<Racer> getRacers() {
+        return Collections.unmodifiableList(racers);
+    }
+
+    // Starts all racers together once every thread is ready. The wait happens on a thread of its own, so
+    // the caller, e.g. the FX thread, returns at once.
+    public void start() {
+        CountDownLatch ready = new CountDownLatch(racers.size());
+        CountDownLatch go = new CountDownLatch(1);
+        for (Racer racer : racers) {
+            Thread thread = new Thread(() -> racer.run(ready, go), "race-" + racer.algorithm);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        Thread starter = new Thread(() -> {
+            try {
+                ready.await();
+                go.countDown();
+            } catch (InterruptedException e) {
+                // Never interrupted; the racers stay parked and are daemons
+            }
+        }, "race-start");
+        starter.setDaemon(true);
+        starter.start();
+    }
+
+    public void cancel() {
+        for (Racer racer : racers) {
+            racer.engine.cancel();
+        }
+    }
+
+    public boolean isFinished() {
+        return finished.get() == racers.size();
+    }
+
+    public class Racer {
+        private final String algorithm;
+        private final int[] values;
+        private final SortEngine engine;
+        private volatile long startNanos;
+        private volatile long endNanos;
+        // 1 for the winner; 0 while running or when stopped
+        private volatile int rank = 0;
+        private volatile Throwable failure;
+
+        Racer(String algorithm, int[] values) {
+            this.algorithm = algorithm;
+            this.values = values;
+            this.engine = new SortEngine();
+        }
+
+        private void run(CountDownLatch ready, CountDownLatch go) {
+            ready.countDown();
+            try {
+                go.await();
+                startNanos = System.nanoTime();
+                engine.sort(algorithm, values);
+                long end = System.nanoTime();
+                rank = ranked.incrementAndGet();
+                endNanos = end;
+                finished.incrementAndGet();
+            } catch (CancellationException | InterruptedException e) {
+                endNanos = System.nanoTime();
+                finished.incrementAndGet();
+            } catch (RuntimeException | Error e) {
+                failure = e;
+                endNanos = System.nanoTime();
+                finished.incrementAndGet();
+            }
+        }
+
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        // The array being sorted, changing underneath the caller while the racer runs
+        public int[] getValues() {
+            return values;
+        }
+
+        // Counters are read racily while running, which is fine for display; they are exact once finished
+        public long getComparisons() {
+            return engine.getComparisons();
+        }
+
+        public long getSwaps() {
+            return engine.getSwaps();
+        }
+
+        public long getWrites() {
+            return engine.getWrites();
+        }
+
+        public long getElapsedNanos() {
+            long start = startNanos;
+            if (start == 0) {
+                return 0;
+            }
+            long end = endNanos;
+            return (end != 0 ? end : System.nanoTime()) - start;
+        }
+
+        public boolean isFinished() {
+            return endNanos != 0;
+        }
+
+        public int getRank() {
+            return rank;
+        }
+
+        public Throwable getFailure() {
+            return failure;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.layout.AnchorPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+import javafx.util.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Window for race mode: the selected algorithms sort copies of the same input at the same time, each in its
+// own lane with live counters and elapsed time, and are ranked by finishing time.
+public class RaceView {
+
+    private static final double LANE_TOP = 20;
+
+    private final Stage stage = new Stage();
+    private final int[] input;
+    private final List<CheckBox> choices = new ArrayList<>();
+    private final VBox lanesBox = new VBox(5);
+    private final Label rankingLabel = new Label();
+    private final List<Lane> lanes = new ArrayList<>();
+    private Race race;
+    private Timeline timeline;
+
+    public RaceView(Window owner, int[] input) {
+        this.input = input;
+
+        HBox choiceBox = new HBox(10);
+        choiceBox.setAlignment(Pos.CENTER_LEFT);
+        for (String algorithm : AlgorithmRegistry.names()) {
+            CheckBox choice = new CheckBox(algorithm);
+            // It spreads over every core by itself, taking them from the other racers
+            choice.setSelected(!algorithm.equals("Parallel Merge Sort"));
+            choice.getStyleClass().add("speedLabel");
+            choices.add(choice);
+            choiceBox.getChildren().add(choice);
+        }
+        Button startBtn = new Button("Start");
+        startBtn.setOnAction(e -> start());
+        Button stopBtn = new Button("Stop");
+        stopBtn.setOnAction(e -> stop());
+        HBox controls = new HBox(10, startBtn, stopBtn, new Label(input.length + " elements"));
+        controls.setAlignment(Pos.CENTER_LEFT);
+        rankingLabel.getStyleClass().add("performanceLabel");
+
+        VBox.setVgrow(lanesBox, Priority.ALWAYS);
+        VBox root = new VBox(10, choiceBox, controls, rankingLabel, lanesBox);
+        root.setPadding(new Insets(10));
+
+        Scene scene = new Scene(root, 1000, 750);
+        scene.getStylesheets().add(getClass().getResource("App.css").toExternalForm());
+        stage.setScene(scene);
+        stage.setTitle("Algorithm Race");
+        stage.initOwner(owner);
+        stage.setOnHidden(e -> {
+            stop();
+            if (timeline != null) {
+                timeline.stop();
+            }
+        });
+    }
+
+    public void show() {
+        stage.show();
+    }
+
+    private void start() {
+        stop();
+        if (timeline != null) {
+            timeline.stop();
+        }
+        List<String> algorithms = new ArrayList<>();
+        for (CheckBox choice : choices) {
+            if (choice.isSelected()) {
+                algorithms.add(choice.getText());
+            }
+        }
+        lanes.clear();
+        lanesBox.getChildren().clear();
+        rankingLabel.setText("");
+        if (algorithms.isEmpty()) {
+            return;
+        }
+
+        race = new Race(algorithms, input);
+        for (Race.Racer racer : race.getRacers()) {
+            lanes.add(new Lane(racer));
+        }
+        race.start();
+
+        timeline = new Timeline(new KeyFrame(Duration.millis(1000.0 / 60), e -> frame()));
+        timeline.setCycleCount(Timeline.INDEFINITE);
+        timeline.play();
+    }
+
+    // Racers stop at their next state change; the lanes keep updating until all of them have
+    private void stop() {
+        if (race != null) {
+            race.cancel();
+        }
+    }
+
+    private void frame() {
+        for (Lane lane : lanes) {
+            lane.update();
+        }
+        if (race.isFinished()) {
+            timeline.stop();
+            showRanking();
+        }
+    }
+
+    private void showRanking() {
+        List<Race.Racer> ranked = new ArrayList<>(race.getRacers());
+        ranked.sort(Comparator.comparingInt((Race.Racer r) -> r.getRank() == 0 ? Integer.MAX_VALUE : r.getRank()));
+        StringBuilder text = new StringBuilder("Ranking: ");
+        for (Race.Racer racer : ranked) {
+            if (racer.getRank() > 0) {
+                text.append(racer.getRank()).append(". ").append(racer.getAlgorithm())
+                    .append(String.format(" (%.1f ms)   ", racer.getElapsedNanos() / 1e6));
+            } else {
+                text.append(racer.getAlgorithm()).append(racer.getFailure() != null ? " (failed)   " : " (stopped)   ");
+            }
+        }
+        rankingLabel.setText(text.toString().trim());
+    }
+
+    // One racer: a header with its counters above a canvas of its array
+    private class Lane {
+        private final Race.Racer racer;
+        private final Label header = new Label();
+        private final BarState bars;
+        private final BarView view;
+        private boolean done = false;
+
+        Lane(Race.Racer racer) {
+            this.racer = racer;
+            header.getStyleClass().add("speedLabel");
+            AnchorPane pane = new AnchorPane();
+            pane.setMinHeight(40);
+            VBox.setVgrow(pane, Priority.ALWAYS);
+            VBox lane = new VBox(2, header, pane);
+            VBox.setVgrow(lane, Priority.ALWAYS);
+            lanesBox.getChildren().add(lane);
+
+            bars = new BarState(input);
+            view = new CanvasBarView(pane, bars, LANE_TOP);
+            pane.widthProperty().addListener((obs, oldVal, newVal) -> view.layout());
+            pane.heightProperty().addListener((obs, oldVal, newVal) -> view.layout());
+            update();
+        }
+
+        // Copies the racer's array as it is right now; only bars that moved since the last frame are redrawn
+        void update() {
+            if (done) {
+                return;
+            }
+            boolean finished = racer.isFinished();
+            int[] values = racer.getValues();
+            for (int i = 0; i < values.length; i++) {
+                bars.setValue(i, values[i]);
+            }
+            if (finished) {
+                done = true;
+                if (racer.getRank() > 0) {
+                    bars.setState(0, bars.size() - 1, SortEngine.SORTED);
+                }
+            }
+            view.render();
+
+            String status = racer.getRank() > 0 ? "  #" + racer.getRank()
+                : racer.isFinished() ? (racer.getFailure() != null ? "  failed" : "  stopped") : "";
+            header.setText(String.format("%s   Comparisons: %d   Swaps: %d   Writes: %d   %.1f ms%s",
+                racer.getAlgorithm(), racer.getComparisons(), racer.getSwaps(), racer.getWrites(),
+                racer.getElapsedNanos() / 1e6, status));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+import javafx.scene.layout.AnchorPane;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Text;
+import java.util.ArrayList;
+
+// One Rectangle and one Text node per element. Suitable for small arrays only. Bars are W wide with GAP
+// between them while they fit the pane and shrink in the same proportion when they do not; heights are
+// scaled from the smallest value, or 0, so the tallest value fills the pane. Labels are shown only when a
+// bar is wide enough to hold one.
+public class RectangleBarView implements BarView {
+
+    private static final double W = 15;
+    private static final double GAP = 15;
+    private static final double TOP = 50;
+    private static final double LABEL_MIN_SLOT = 24;
+
+    private final AnchorPane pane;
+    private final BarState state;
+    private final ArrayList<Rectangle> rects = new ArrayList<>();
+    private final ArrayList<Text> labels = new ArrayList<>();
+
+    // Geometry of the last layout
+    private double width = W;
+    private double scale = 1;
+    private int scaledMax;
+    private int scaledMin;
+
+    public RectangleBarView(AnchorPane pane, BarState state) {
+        this.pane = pane;
+        this.state = state;
+        for (int i = 0; i < state.size(); i++) {
+            rects.add(new Rectangle());
+
+            Text label = new Text();
+            label.getStyleClass().add("bar-label");
+            labels.add(label);
+        }
+        layout();
+        pane.getChildren().addAll(rects);
+        pane.getChildren().addAll(labels);
+    }
+
+    @Override
+    public void layout() {
+        double paneWidth = pane.getWidth();
+        double paneHeight = pane.getHeight();
+        if (paneWidth == 0) {
+            paneWidth = pane.getParent().getBoundsInLocal().getWidth();
+        }
+
+        int n = rects.size();
+        // n slots minus the gap after the last bar must fit the pane
+        double slot = n > 0 ? Math.min(W + GAP, paneWidth / (n - GAP / (W + GAP))) : W + GAP;
+        width = slot * W / (W + GAP);
+        scaledMax = state.getMaxValue();
+        scaledMin = state.getMinValue();
+        // Before the pane has been laid out its height is unknown; the resize that follows lays out again
+        scale = paneHeight > TOP ? (paneHeight - TOP) / ((double) scaledMax - scaledMin) : 1;
+        boolean showLabels = slot >= LABEL_MIN_SLOT;
+        double totalWidth = n * slot - (slot - width);
+        double startX = Math.max(0, (paneWidth - totalWidth) / 2);
+
+        for (int i = 0; i < n; i++) {
+            Rectangle rect = rects.get(i);
+            rect.setX(startX + i * slot);
+            rect.setY(TOP);
+            rect.setWidth(width);
+            labels.get(i).setVisible(showLabels);
+            update(i);
+        }
+        state.clearDirty();
+    }
+
+    @Override
+    public void render() {
+        if (state.getMaxValue() != scaledMax || state.getMinValue() != scaledMin) {
+            layout();
+            return;
+        }
+        for (int k = 0; k < state.getDirtyCount(); k++) {
+            update(state.getDirtyIndex(k));
+        }
+        state.clearDirty();
+    }
+
+    private void update(int index) {
+        Rectangle rect = rects.get(index);
+        rect.setHeight(((double) state.getValue(index) - scaledMin) * scale);
+        rect.setFill(BarView.colorOf(state.getState(index)));
+
+        Text label = labels.get(index);
+        label.setText(String.valueOf(state.getValue(index)));
+        label.setX(rect.getX() + width / 2 - label.getBoundsInLocal().getWidth() / 2);
+        label.setY(rect.getY() - 5);
+    }
+}
@@ -0,0 +1,56 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+// Append-only CSV log of finished runs, one line per run. The header is written when the file is created;
+// existing lines are never rewritten, so the log can be collected from many sessions and read by any tool
+// that reads CSV.
+public class ResultsLog {
+
+    public static final String HEADER = "time,algorithm,n,distribution,seed,comparisons,swaps,writes,reads,"
+        + "wall_ns,timing,aux_peak_bytes";
+
+    private ResultsLog() {
+    }
+
+    // seed is null for input that was not generated. untraced tells whether wall_ns comes from a run without
+    // a listener, or from the animated run, which waits for the animation.
+    public static void append(Path log, String algorithm, int n, String distribution, Long seed,
+                              SortMetrics metrics, boolean untraced) throws IOException {
+        String line = String.format(Locale.ROOT, "%s,%s,%d,%s,%s,%d,%d,%d,%d,%d,%s,%d%n",
+            LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME), field(algorithm), n,
+            field(distribution), seed == null ? "" : seed.toString(), metrics.getComparisons(), metrics.getSwaps(),
+            metrics.getWrites(), metrics.getReads(), metrics.getElapsedNanos(), untraced ? "untraced" : "traced",
+            metrics.getPeakAuxBytes());
+        Path parent = log.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            String text = channel.size() == 0 ? HEADER + System.lineSeparator() + line : line;
+            ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    // Quotes a value containing a separator or quote
+    private static String field(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,43 @@
+import java.util.List;
+
+// A sorting algorithm as a plugin. Implementations are found through ServiceLoader: list the class name in
+// META-INF/services/SortAlgorithm on the class path and it shows up in the algorithm list, race mode and
+// the headless benchmark. Implementations must be public with a public no-argument constructor, and must
+// not depend on JavaFX so that they also run headless.
+public interface SortAlgorithm {
+
+    // Name shown in the UI and accepted by SortEngine.sort
+    String getName();
+
+    String getComplexity();
+
+    // Sorts array in place. The engine is already bound to array, so an implementation can use its counted
+    // operations (greater, compareValues, swap, write, read, mark) or call one of its built-in algorithms.
+    void sort(SortEngine engine, int[] array);
+
+    // Meaning of the display states this algorithm marks, in the order the legend shows them
+    List<LegendItem> getLegend();
+
+    // Explanation and pseudocode for the details dialog, read on first use from descriptions/<name>.txt
+    default String getDescription() {
+        return AlgorithmDescription.load(getName());
+    }
+
+    class LegendItem {
+        private final byte state;
+        private final String label;
+
+        public LegendItem(byte state, String label) {
+            this.state = state;
+            this.label = label;
+        }
+
+        public byte getState() {
+            return state;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+}
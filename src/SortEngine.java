@@ -0,0 +1,1510 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+// JavaFX-free implementations of the sorting algorithms on plain int arrays.
+// Every primitive step is counted and, when a listener is attached, reported to it so the
+// visualizer can replay the run. Without a listener the algorithms run at full speed.
+public class SortEngine {
+
+    // Display states reported through SortListener.mark
+    public static final byte UNSORTED = 0;
+    public static final byte PRIMARY = 1;
+    public static final byte SECONDARY = 2;
+    public static final byte SORTED = 3;
+    // Second pivot of Dual-Pivot Quick Sort, blocks moved by TimSort's galloping
+    public static final byte TERTIARY = 4;
+    // Worker lanes of the parallel sorts use states LANE .. LANE + LANES - 1
+    public static final byte LANE = 8;
+    public static final int LANES = 8;
+
+    // Gap sequences of Shell Sort; "Shell Sort" alone uses DEFAULT_GAP_SEQUENCE
+    public static final String[] GAP_SEQUENCES = {"Shell", "Knuth", "Sedgewick", "Ciura", "Tokuda"};
+    public static final String DEFAULT_GAP_SEQUENCE = "Ciura";
+    private static final Map<String, int[]> GAP_TABLES = buildGapTables();
+
+    // Intro Sort: ranges up to this size are finished by insertion sort
+    private static final int INTRO_INSERTION_CUTOFF = 16;
+    // Intro Sort: ranges above this size pick the pivot as Tukey's ninther instead of a median of three
+    private static final int NINTHER_THRESHOLD = 128;
+    // Dual-Pivot Quick Sort: ranges below this size are finished by insertion sort. The JDK uses 47, but its
+    // insertion sort shifts elements with single writes, while the one here swaps neighbours.
+    private static final int DUAL_PIVOT_INSERTION_CUTOFF = 17;
+    // TimSort: arrays shorter than this are binary insertion sorted, and runs are at least half as long
+    private static final int TIM_MIN_MERGE = 32;
+    // TimSort: wins in a row by one run before a merge starts galloping
+    private static final int TIM_MIN_GALLOP = 7;
+    private static final int TIM_INITIAL_TEMP = 256;
+    // Radix sorts: bits per digit, so one byte per pass
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    // MSD Radix Sort: buckets up to this size are finished by insertion sort
+    private static final int MSD_INSERTION_CUTOFF = 16;
+    // Counting Sort: wider key ranges would need too many counters and fall back to LSD Radix Sort
+    private static final int COUNTING_MAX_RANGE = 1 << 24;
+    // External Merge Sort: the simulated memory holds 1 / EXTERNAL_RUNS of the array, and one merge reads
+    // from at most EXTERNAL_FAN_IN runs, so the visualization shows several runs and more than one pass
+    private static final int EXTERNAL_RUNS = 8;
+    private static final int EXTERNAL_FAN_IN = 4;
+
+    private final SortListener listener;
+    private int[] a;
+    private long comparisons = 0;
+    private long swaps = 0;
+    private long writes = 0;
+    private long reads = 0;
+    private long bytesMoved = 0;
+    // Bytes currently held in scratch arrays and the most held at once
+    private long auxBytes = 0;
+    private long peakAuxBytes = 0;
+    // Nanoseconds per phase in the order the phases first ran, and the phase running now
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    private String phase;
+    private long phaseStart;
+    private long elapsedNanos = 0;
+    // JFR: the run being recorded, what its input looks like and the running phase's event, if phases are
+    // recorded
+    private String algorithm;
+    private String distribution;
+    private SortEvents.SortPhase phaseEvent;
+    private boolean recordPhases;
+    private volatile boolean cancelled = false;
+    // TimSort state: merge buffer, stack of pending runs and the adaptive galloping threshold
+    private int[] timTemp;
+    private int[] runBase;
+    private int[] runLength;
+    private int stackSize;
+    private int runCount;
+    private int minGallop;
+
+    public SortEngine() {
+        this(null);
+    }
+
+    public SortEngine(SortListener listener) {
+        this.listener = listener;
+    }
+
+    public long getComparisons() {
+        return comparisons;
+    }
+
+    public long getSwaps() {
+        return swaps;
+    }
+
+    public long getWrites() {
+        return writes;
+    }
+
+    public long getReads() {
+        return reads;
+    }
+
+    // Bytes of element data copied by swaps, writes and copies into scratch arrays
+    public long getBytesMoved() {
+        return bytesMoved;
+    }
+
+    // High-water mark of the scratch arrays the algorithm allocated, in bytes
+    public long getPeakAuxBytes() {
+        return peakAuxBytes;
+    }
+
+    // Snapshot of all counters; phase and elapsed times are complete once sort() has returned
+    public SortMetrics getMetrics() {
+        return new SortMetrics(comparisons, swaps, writes, reads, bytesMoved, peakAuxBytes, elapsedNanos, phaseNanos);
+    }
+
+    // Describes the input in the JFR events of the following runs, e.g. "uniform" or "custom"
+    public void setDistribution(String distribution) {
+        this.distribution = distribution;
+    }
+
+    // Makes a running sort() throw CancellationException at its next state change, which every algorithm
+    // reports at least once per outer loop iteration, merge or partition
+    public void cancel() {
+        cancelled = true;
+    }
+
+    // Runs the algorithm registered under this name, or Shell sort with a specific gap sequence when the
+    // name is shellSortName(sequence)
+    public void sort(String algorithm, int[] array) {
+        SortEvents.SortRun run = new SortEvents.SortRun();
+        run.begin();
+        this.algorithm = algorithm;
+        recordPhases = new SortEvents.SortPhase().isEnabled();
+        long start = System.nanoTime();
+        try {
+            SortAlgorithm sortAlgorithm = AlgorithmRegistry.get(algorithm);
+            if (sortAlgorithm != null) {
+                a = array;
+                sortAlgorithm.sort(this, array);
+                return;
+            }
+            for (String sequence : GAP_SEQUENCES) {
+                if (algorithm.equals(shellSortName(sequence))) {
+                    shellSort(array, sequence);
+                    return;
+                }
+            }
+            throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+        } finally {
+            long end = System.nanoTime();
+            endPhase(end);
+            elapsedNanos = end - start;
+            run.end();
+            if (run.shouldCommit()) {
+                run.algorithm = algorithm;
+                run.size = array.length;
+                run.distribution = distribution;
+                run.traced = listener != null;
+                run.comparisons = comparisons;
+                run.swaps = swaps;
+                run.writes = writes;
+                run.reads = reads;
+                run.peakAuxBytes = peakAuxBytes;
+                run.commit();
+            }
+        }
+    }
+
+    public void bubbleSort(int[] array) {
+        a = array;
+        int n = a.length;
+        for (int i = 0; i < n - 1; i++) {
+            for (int j = 0; j < n - i - 1; j++) {
+                if (greater(j, j + 1)) {
+                    swap(j, j + 1);
+                }
+            }
+            mark(n - i - 1, n - i - 1, SORTED);
+        }
+        mark(0, n - 1, SORTED);
+    }
+
+    public void selectionSort(int[] array) {
+        a = array;
+        int n = a.length;
+        for (int i = 0; i < n - 1; i++) {
+            int min = i;
+            mark(i, i, PRIMARY);
+            for (int j = i + 1; j < n; j++) {
+                if (greater(min, j)) {
+                    if (min != i) {
+                        mark(min, min, UNSORTED);
+                    }
+                    min = j;
+                    mark(min, min, SECONDARY);
+                }
+            }
+            if (min != i) {
+                swap(i, min);
+                mark(min, min, UNSORTED);
+            }
+            mark(i, i, SORTED);
+        }
+        mark(0, n - 1, SORTED);
+    }
+
+    public void insertionSort(int[] array) {
+        a = array;
+        int n = a.length;
+        if (n > 0) {
+            mark(0, 0, SORTED);
+        }
+        for (int i = 1; i < n; i++) {
+            mark(i, i, SECONDARY);
+            int j = i;
+            while (j > 0 && greater(j - 1, j)) {
+                swap(j - 1, j);
+                mark(j, j, SORTED);
+                mark(j - 1, j - 1, SECONDARY);
+                j--;
+            }
+            mark(j, j, SORTED);
+        }
+    }
+
+    // Heap sort over the whole array: build a max-heap in place, then repeatedly swap the root behind the heap
+    public void heapSort(int[] array) {
+        a = array;
+        int n = a.length;
+        heapRange(0, n - 1);
+        mark(0, n - 1, SORTED);
+    }
+
+    // Shell sort with the gap sequence of shellSortName(sequence): insertion sort over elements gap apart
+    // for each gap down to 1. Each pass colors the interleaved chains it sorts. Sorting allocates nothing;
+    // the gaps come from the tables built once below, or are halved from n for Shell's own sequence.
+    public void shellSort(int[] array, String sequence) {
+        a = array;
+        int n = a.length;
+        int[] gaps = GAP_TABLES.get(sequence);
+        if (gaps == null && !"Shell".equals(sequence)) {
+            throw new IllegalArgumentException("Unknown gap sequence: " + sequence);
+        }
+        int g = gaps != null ? gaps.length - 1 : 0;
+        while (gaps != null && g > 0 && gaps[g] >= n) {
+            g--;
+        }
+        int gap = gaps != null ? gaps[g] : n / 2;
+        while (gap > 0) {
+            phase("gap " + gap);
+            if (gap > 1) {
+                for (int i = 0; i < n; i++) {
+                    mark(i, i, (byte) (LANE + i % gap % LANES));
+                }
+            } else {
+                mark(0, n - 1, UNSORTED);
+            }
+            for (int i = gap; i < n; i++) {
+                for (int j = i; j >= gap && greater(j - gap, j); j -= gap) {
+                    swap(j - gap, j);
+                }
+            }
+            if (gaps != null) {
+                gap = g > 0 ? gaps[--g] : 0;
+            } else {
+                gap /= 2;
+            }
+        }
+        mark(0, n - 1, SORTED);
+    }
+
+    // Algorithm name under which sort() runs Shell sort with the given entry of GAP_SEQUENCES
+    public static String shellSortName(String sequence) {
+        return "Shell Sort (" + sequence + ")";
+    }
+
+    // Gaps below Integer.MAX_VALUE in increasing order, for every sequence except Shell's n/2, n/4, ..., 1
+    private static Map<String, int[]> buildGapTables() {
+        Map<String, int[]> tables = new HashMap<>();
+        // Knuth: (3^k - 1) / 2
+        List<Long> gaps = new ArrayList<>();
+        for (long h = 1; h < Integer.MAX_VALUE; h = 3 * h + 1) {
+            gaps.add(h);
+        }
+        tables.put("Knuth", toIntArray(gaps));
+        // Sedgewick 1986: 9 * 4^k - 9 * 2^k + 1 and 4^k - 3 * 2^k + 1, interleaved
+        gaps = new ArrayList<>();
+        for (int k = 0; k < 16; k++) {
+            long even = 9 * (1L << 2 * k) - 9 * (1L << k) + 1;
+            long odd = (1L << 2 * (k + 2)) - 3 * (1L << k + 2) + 1;
+            if (even < Integer.MAX_VALUE) {
+                gaps.add(even);
+            }
+            if (odd < Integer.MAX_VALUE) {
+                gaps.add(odd);
+            }
+        }
+        tables.put("Sedgewick", toIntArray(gaps));
+        // Ciura: measured best gaps up to 1750, extended by a factor of 2.25
+        gaps = new ArrayList<>();
+        for (long h : new long[] {1, 4, 10, 23, 57, 132, 301, 701, 1750}) {
+            gaps.add(h);
+        }
+        for (long h = (long) (1750 * 2.25); h < Integer.MAX_VALUE; h = (long) (h * 2.25)) {
+            gaps.add(h);
+        }
+        tables.put("Ciura", toIntArray(gaps));
+        // Tokuda: ceil(h'), h' = 2.25 h' + 1 starting from 1
+        gaps = new ArrayList<>();
+        for (double h = 1; Math.ceil(h) < Integer.MAX_VALUE; h = 2.25 * h + 1) {
+            gaps.add((long) Math.ceil(h));
+        }
+        tables.put("Tokuda", toIntArray(gaps));
+        return tables;
+    }
+
+    private static int[] toIntArray(List<Long> gaps) {
+        return gaps.stream().sorted().mapToInt(Long::intValue).toArray();
+    }
+
+    // Bottom-up merge sort; the segment being merged is copied into temp and written back in order.
+    public void mergeSort(int[] array) {
+        a = array;
+        int n = a.length;
+        int[] temp = allocate(n);
+        for (int size = 1; size < n; size *= 2) {
+            phase("merge width " + size);
+            for (int left = 0; left < n - size; left += 2 * size) {
+                int mid = left + size;
+                int end = Math.min(left + 2 * size - 1, n - 1);
+                mark(left, mid - 1, PRIMARY);
+                mark(mid, end, SECONDARY);
+                copyToTemp(temp, left, end - left + 1);
+
+                int li = left;
+                int ri = mid;
+                for (int k = left; k <= end; k++) {
+                    if (li < mid && (ri > end || compareValues(temp[li], temp[ri], li, ri) <= 0)) {
+                        write(k, load(temp, li++));
+                    } else {
+                        write(k, load(temp, ri++));
+                    }
+                    mark(k, k, SORTED);
+                }
+            }
+        }
+        release(temp);
+        mark(0, n - 1, SORTED);
+    }
+
+    // TimSort as in java.util.TimSort: the array is cut into natural runs (descending ones are reversed),
+    // runs shorter than minRun are extended by binary insertion sort, and runs are merged from a stack whose
+    // lengths must keep growing like Fibonacci numbers. A merge first skips the parts of both runs already in
+    // place, copies only the smaller run out, and switches to galloping when one run keeps winning.
+    public void timSort(int[] array) {
+        a = array;
+        int n = a.length;
+        if (n < 2) {
+            mark(0, n - 1, SORTED);
+            return;
+        }
+        if (n < TIM_MIN_MERGE) {
+            int runLength = countRunAndMakeAscending(0, n);
+            binaryInsertion(0, n, runLength);
+            mark(0, n - 1, SORTED);
+            return;
+        }
+
+        timTemp = allocate(n < 2 * TIM_INITIAL_TEMP ? n >>> 1 : TIM_INITIAL_TEMP);
+        int stackLength = n < 120 ? 5 : n < 1542 ? 10 : n < 119151 ? 24 : 49;
+        runBase = allocate(stackLength);
+        runLength = allocate(stackLength);
+        stackSize = 0;
+        runCount = 0;
+        minGallop = TIM_MIN_GALLOP;
+
+        int minRun = minRunLength(n);
+        int lo = 0;
+        int remaining = n;
+        do {
+            phase("find runs");
+            int length = countRunAndMakeAscending(lo, lo + remaining);
+            if (length < minRun) {
+                int force = Math.min(remaining, minRun);
+                binaryInsertion(lo, lo + force, lo + length);
+                length = force;
+            }
+            mark(lo, lo + length - 1, (byte) (LANE + runCount++ % LANES));
+            runBase[stackSize] = lo;
+            runLength[stackSize] = length;
+            stackSize++;
+            phase("merge runs");
+            mergeCollapse();
+            lo += length;
+            remaining -= length;
+        } while (remaining != 0);
+        while (stackSize > 1) {
+            int k = stackSize - 2;
+            if (k > 0 && runLength[k - 1] < runLength[k + 1]) {
+                k--;
+            }
+            mergeAt(k);
+        }
+        release(timTemp);
+        release(runBase);
+        release(runLength);
+        timTemp = null;
+        mark(0, n - 1, SORTED);
+    }
+
+    // n itself below TIM_MIN_MERGE, otherwise a length in [16, 32] that splits n into a power of two of runs
+    // or slightly fewer
+    private static int minRunLength(int n) {
+        int r = 0;
+        while (n >= TIM_MIN_MERGE) {
+            r |= n & 1;
+            n >>= 1;
+        }
+        return n + r;
+    }
+
+    // Length of the run starting at lo (hi exclusive); a strictly descending run is reversed in place
+    private int countRunAndMakeAscending(int lo, int hi) {
+        int runHi = lo + 1;
+        if (runHi == hi) {
+            return 1;
+        }
+        if (greater(lo, runHi++)) {
+            while (runHi < hi && greater(runHi - 1, runHi)) {
+                runHi++;
+            }
+            for (int i = lo, j = runHi - 1; i < j; i++, j--) {
+                swap(i, j);
+            }
+        } else {
+            while (runHi < hi && !greater(runHi - 1, runHi)) {
+                runHi++;
+            }
+        }
+        return runHi - lo;
+    }
+
+    // Sorts a[lo .. hi - 1], of which a[lo .. start - 1] is already sorted, by binary searching the place of
+    // each following element and shifting the larger ones right
+    private void binaryInsertion(int lo, int hi, int start) {
+        if (start == lo) {
+            start++;
+        }
+        for (; start < hi; start++) {
+            int pivot = read(start);
+            mark(start, start, SECONDARY);
+            int left = lo;
+            int right = start;
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                if (compareValues(pivot, a[mid], start, mid) < 0) {
+                    right = mid;
+                } else {
+                    left = mid + 1;
+                }
+            }
+            for (int k = start; k > left; k--) {
+                write(k, load(a, k - 1));
+            }
+            write(left, pivot);
+            mark(start, start, UNSORTED);
+        }
+    }
+
+    // Merges adjacent runs until, for the top runs X, Y, Z, both len(X) > len(Y) + len(Z) and
+    // len(Y) > len(Z) hold, checked one level deeper as well
+    private void mergeCollapse() {
+        while (stackSize > 1) {
+            int k = stackSize - 2;
+            if (k > 0 && runLength[k - 1] <= runLength[k] + runLength[k + 1]
+                    || k > 1 && runLength[k - 2] <= runLength[k] + runLength[k - 1]) {
+                if (runLength[k - 1] < runLength[k + 1]) {
+                    k--;
+                }
+            } else if (runLength[k] > runLength[k + 1]) {
+                break;
+            }
+            mergeAt(k);
+        }
+    }
+
+    // Merges the runs at stack positions i and i + 1
+    private void mergeAt(int i) {
+        int base1 = runBase[i];
+        int length1 = runLength[i];
+        int base2 = runBase[i + 1];
+        int length2 = runLength[i + 1];
+        runLength[i] = length1 + length2;
+        if (i == stackSize - 3) {
+            runBase[i + 1] = runBase[i + 2];
+            runLength[i + 1] = runLength[i + 2];
+        }
+        stackSize--;
+        byte state = (byte) (LANE + runCount++ % LANES);
+
+        // Elements of the first run that are not larger than the second run's first one are already in place,
+        // and so are elements of the second run not smaller than the first run's last one
+        int skip = gallopRight(a[base2], base2, a, base1, length1, 0, 0);
+        base1 += skip;
+        length1 -= skip;
+        if (length1 > 0) {
+            length2 = gallopLeft(a[base1 + length1 - 1], base1 + length1 - 1, a, base2, length2, length2 - 1, 0);
+            if (length2 > 0) {
+                if (length1 <= length2) {
+                    mergeLo(base1, length1, base2, length2);
+                } else {
+                    mergeHi(base1, length1, base2, length2);
+                }
+            }
+        }
+        mark(runBase[i], runBase[i] + runLength[i] - 1, state);
+    }
+
+    // Merges left to right with the first (smaller) run copied to timTemp
+    private void mergeLo(int base1, int length1, int base2, int length2) {
+        int[] temp = ensureTimTemp(length1);
+        copyToTemp(temp, base1, 0, length1);
+        int cursor1 = 0;
+        int cursor2 = base2;
+        int dest = base1;
+        // mergeAt guarantees that the second run's first element goes first and the first run's last goes last
+        write(dest++, load(a, cursor2++));
+        if (--length2 == 0) {
+            copyBack(temp, cursor1, dest, length1, false);
+            return;
+        }
+        if (length1 == 1) {
+            copyBack(a, cursor2, dest, length2, false);
+            write(dest + length2, load(temp, cursor1));
+            return;
+        }
+
+        int gallop = minGallop;
+        outer:
+        while (true) {
+            // One element at a time until one run has won gallop times in a row
+            int count1 = 0;
+            int count2 = 0;
+            do {
+                if (compareValues(a[cursor2], temp[cursor1], cursor2, base1 + cursor1) < 0) {
+                    write(dest++, load(a, cursor2++));
+                    count2++;
+                    count1 = 0;
+                    if (--length2 == 0) {
+                        break outer;
+                    }
+                } else {
+                    write(dest++, load(temp, cursor1++));
+                    count1++;
+                    count2 = 0;
+                    if (--length1 == 1) {
+                        break outer;
+                    }
+                }
+            } while ((count1 | count2) < gallop);
+
+            // Galloping: search where the other run's next element goes and move the whole block at once
+            phase("gallop");
+            do {
+                count1 = gallopRight(a[cursor2], cursor2, temp, cursor1, length1, 0, base1);
+                if (count1 != 0) {
+                    copyBack(temp, cursor1, dest, count1, true);
+                    dest += count1;
+                    cursor1 += count1;
+                    length1 -= count1;
+                    if (length1 <= 1) {
+                        break outer;
+                    }
+                }
+                write(dest++, load(a, cursor2++));
+                if (--length2 == 0) {
+                    break outer;
+                }
+                count2 = gallopLeft(temp[cursor1], base1 + cursor1, a, cursor2, length2, 0, 0);
+                if (count2 != 0) {
+                    copyBack(a, cursor2, dest, count2, true);
+                    dest += count2;
+                    cursor2 += count2;
+                    length2 -= count2;
+                    if (length2 == 0) {
+                        break outer;
+                    }
+                }
+                write(dest++, load(temp, cursor1++));
+                if (--length1 == 1) {
+                    break outer;
+                }
+                gallop--;
+            } while (count1 >= TIM_MIN_GALLOP | count2 >= TIM_MIN_GALLOP);
+            phase("merge runs");
+            // Galloping stopped paying off; make it harder to enter again
+            if (gallop < 0) {
+                gallop = 0;
+            }
+            gallop += 2;
+        }
+        minGallop = Math.max(1, gallop);
+        phase("merge runs");
+
+        if (length1 == 1) {
+            copyBack(a, cursor2, dest, length2, false);
+            write(dest + length2, load(temp, cursor1));
+        } else {
+            copyBack(temp, cursor1, dest, length1, false);
+        }
+    }
+
+    // Merges right to left with the second (smaller) run copied to timTemp
+    private void mergeHi(int base1, int length1, int base2, int length2) {
+        int[] temp = ensureTimTemp(length2);
+        copyToTemp(temp, base2, 0, length2);
+        int cursor1 = base1 + length1 - 1;
+        int cursor2 = length2 - 1;
+        int dest = base2 + length2 - 1;
+        write(dest--, load(a, cursor1--));
+        if (--length1 == 0) {
+            copyBack(temp, 0, dest - (length2 - 1), length2, false);
+            return;
+        }
+        if (length2 == 1) {
+            dest -= length1;
+            cursor1 -= length1;
+            copyBack(a, cursor1 + 1, dest + 1, length1, false);
+            write(dest, load(temp, cursor2));
+            return;
+        }
+
+        int gallop = minGallop;
+        outer:
+        while (true) {
+            int count1 = 0;
+            int count2 = 0;
+            do {
+                if (compareValues(temp[cursor2], a[cursor1], base2 + cursor2, cursor1) < 0) {
+                    write(dest--, load(a, cursor1--));
+                    count1++;
+                    count2 = 0;
+                    if (--length1 == 0) {
+                        break outer;
+                    }
+                } else {
+                    write(dest--, load(temp, cursor2--));
+                    count2++;
+                    count1 = 0;
+                    if (--length2 == 1) {
+                        break outer;
+                    }
+                }
+            } while ((count1 | count2) < gallop);
+
+            phase("gallop");
+            do {
+                count1 = length1 - gallopRight(temp[cursor2], base2 + cursor2, a, base1, length1, length1 - 1, 0);
+                if (count1 != 0) {
+                    dest -= count1;
+                    cursor1 -= count1;
+                    length1 -= count1;
+                    copyBack(a, cursor1 + 1, dest + 1, count1, true);
+                    if (length1 == 0) {
+                        break outer;
+                    }
+                }
+                write(dest--, load(temp, cursor2--));
+                if (--length2 == 1) {
+                    break outer;
+                }
+                count2 = length2 - gallopLeft(a[cursor1], cursor1, temp, 0, length2, length2 - 1, base2);
+                if (count2 != 0) {
+                    dest -= count2;
+                    cursor2 -= count2;
+                    length2 -= count2;
+                    copyBack(temp, cursor2 + 1, dest + 1, count2, true);
+                    if (length2 <= 1) {
+                        break outer;
+                    }
+                }
+                write(dest--, load(a, cursor1--));
+                if (--length1 == 0) {
+                    break outer;
+                }
+                gallop--;
+            } while (count1 >= TIM_MIN_GALLOP | count2 >= TIM_MIN_GALLOP);
+            phase("merge runs");
+            if (gallop < 0) {
+                gallop = 0;
+            }
+            gallop += 2;
+        }
+        minGallop = Math.max(1, gallop);
+        phase("merge runs");
+
+        if (length2 == 1) {
+            dest -= length1;
+            cursor1 -= length1;
+            copyBack(a, cursor1 + 1, dest + 1, length1, false);
+            write(dest, load(temp, cursor2));
+        } else {
+            copyBack(temp, 0, dest - (length2 - 1), length2, false);
+        }
+    }
+
+    // Index in src[base .. base + length - 1] before the first element not smaller than key, found by
+    // exponential search outwards from hint and a binary search in the last step. keyAt is where key is
+    // shown and origin the array index src[0] is shown at (nonzero when src is the merge buffer).
+    private int gallopLeft(int key, int keyAt, int[] src, int base, int length, int hint, int origin) {
+        int lastOffset = 0;
+        int offset = 1;
+        if (compareValues(key, src[base + hint], keyAt, origin + base + hint) > 0) {
+            int maxOffset = length - hint;
+            while (offset < maxOffset
+                    && compareValues(key, src[base + hint + offset], keyAt, origin + base + hint + offset) > 0) {
+                lastOffset = offset;
+                offset = (offset << 1) + 1;
+                if (offset <= 0) {
+                    offset = maxOffset;
+                }
+            }
+            offset = Math.min(offset, maxOffset);
+            lastOffset += hint;
+            offset += hint;
+        } else {
+            int maxOffset = hint + 1;
+            while (offset < maxOffset
+                    && compareValues(key, src[base + hint - offset], keyAt, origin + base + hint - offset) <= 0) {
+                lastOffset = offset;
+                offset = (offset << 1) + 1;
+                if (offset <= 0) {
+                    offset = maxOffset;
+                }
+            }
+            offset = Math.min(offset, maxOffset);
+            int previous = lastOffset;
+            lastOffset = hint - offset;
+            offset = hint - previous;
+        }
+        lastOffset++;
+        while (lastOffset < offset) {
+            int m = lastOffset + ((offset - lastOffset) >>> 1);
+            if (compareValues(key, src[base + m], keyAt, origin + base + m) > 0) {
+                lastOffset = m + 1;
+            } else {
+                offset = m;
+            }
+        }
+        return offset;
+    }
+
+    // Like gallopLeft, but the index before the first element larger than key, so equal keys stay in order
+    private int gallopRight(int key, int keyAt, int[] src, int base, int length, int hint, int origin) {
+        int lastOffset = 0;
+        int offset = 1;
+        if (compareValues(key, src[base + hint], keyAt, origin + base + hint) < 0) {
+            int maxOffset = hint + 1;
+            while (offset < maxOffset
+                    && compareValues(key, src[base + hint - offset], keyAt, origin + base + hint - offset) < 0) {
+                lastOffset = offset;
+                offset = (offset << 1) + 1;
+                if (offset <= 0) {
+                    offset = maxOffset;
+                }
+            }
+            offset = Math.min(offset, maxOffset);
+            int previous = lastOffset;
+            lastOffset = hint - offset;
+            offset = hint - previous;
+        } else {
+            int maxOffset = length - hint;
+            while (offset < maxOffset
+                    && compareValues(key, src[base + hint + offset], keyAt, origin + base + hint + offset) >= 0) {
+                lastOffset = offset;
+                offset = (offset << 1) + 1;
+                if (offset <= 0) {
+                    offset = maxOffset;
+                }
+            }
+            offset = Math.min(offset, maxOffset);
+            lastOffset += hint;
+            offset += hint;
+        }
+        lastOffset++;
+        while (lastOffset < offset) {
+            int m = lastOffset + ((offset - lastOffset) >>> 1);
+            if (compareValues(key, src[base + m], keyAt, origin + base + m) < 0) {
+                offset = m;
+            } else {
+                lastOffset = m + 1;
+            }
+        }
+        return offset;
+    }
+
+    // Writes src[from .. from + length - 1] to a[to ..], back to front when moving right within a so the
+    // ranges may overlap. Blocks moved by galloping are marked.
+    private void copyBack(int[] src, int from, int to, int length, boolean galloped) {
+        if (src == a && to > from) {
+            for (int k = length - 1; k >= 0; k--) {
+                write(to + k, load(a, from + k));
+            }
+        } else {
+            for (int k = 0; k < length; k++) {
+                write(to + k, load(src, from + k));
+            }
+        }
+        if (galloped) {
+            mark(to, to + length - 1, TERTIARY);
+        }
+    }
+
+    // The merge buffer only ever holds the smaller of two runs, so it never grows beyond n / 2
+    private int[] ensureTimTemp(int capacity) {
+        if (timTemp.length < capacity) {
+            int size = Integer.highestOneBit(capacity) << 1;
+            if (size < 0 || size > a.length >>> 1) {
+                size = Math.max(capacity, a.length >>> 1);
+            }
+            release(timTemp);
+            timTemp = allocate(size);
+        }
+        return timTemp;
+    }
+
+    // Lomuto partitioning around the last element, driven by an explicit stack of ranges.
+    public void quickSort(int[] array) {
+        a = array;
+        int n = a.length;
+        phase("partition");
+        int[] stack = allocate(64);
+        int top = 0;
+        if (n > 0) {
+            stack[top++] = 0;
+            stack[top++] = n - 1;
+        }
+        while (top > 0) {
+            int hi = stack[--top];
+            int lo = stack[--top];
+            if (lo >= hi) {
+                mark(lo, lo, SORTED);
+                continue;
+            }
+            mark(hi, hi, SECONDARY);
+            int p = lo - 1;
+            for (int j = lo; j < hi; j++) {
+                if (greater(hi, j)) {
+                    p++;
+                    swap(p, j);
+                }
+            }
+            p++;
+            swap(p, hi);
+            mark(p, p, SORTED);
+
+            if (top + 4 > stack.length) {
+                stack = grow(stack);
+            }
+            // Push the right range first so the left one is processed next
+            if (p + 1 <= hi) {
+                stack[top++] = p + 1;
+                stack[top++] = hi;
+            }
+            if (lo <= p - 1) {
+                stack[top++] = lo;
+                stack[top++] = p - 1;
+            }
+        }
+        release(stack);
+    }
+
+    // Yaroslavskiy's dual-pivot quick sort, the scheme of the JDK's Arrays.sort(int[]): five evenly spaced
+    // elements are sorted, the second and fourth become pivots P1 <= P2 at the ends of the range, and one pass
+    // splits it into < P1, P1..P2 and > P2. Each element is compared to fewer pivots on average and the three
+    // parts are smaller, which saves comparisons and memory traffic over a single pivot.
+    public void dualPivotQuickSort(int[] array) {
+        a = array;
+        int n = a.length;
+        int[] stack = allocate(64);
+        int top = 0;
+        if (n > 0) {
+            stack[top++] = 0;
+            stack[top++] = n - 1;
+        }
+        while (top > 0) {
+            int hi = stack[--top];
+            int lo = stack[--top];
+            if (hi - lo + 1 < DUAL_PIVOT_INSERTION_CUTOFF) {
+                phase("insertion sort");
+                insertionRange(lo, hi);
+                mark(lo, hi, SORTED);
+                continue;
+            }
+
+            phase("choose pivots");
+            int seventh = (hi - lo + 1) / 7;
+            int e3 = lo + (hi - lo) / 2;
+            int e2 = e3 - seventh;
+            int e1 = e2 - seventh;
+            int e4 = e3 + seventh;
+            int e5 = e4 + seventh;
+            sortFive(e1, e2, e3, e4, e5);
+            swap(lo, e2);
+            swap(hi, e4);
+            mark(lo, lo, SECONDARY);
+            mark(hi, hi, TERTIARY);
+
+            // a[lo+1..lt-1] < P1, a[lt..k-1] in [P1, P2], a[gt+1..hi-1] > P2
+            phase("partition");
+            int lt = lo + 1;
+            int gt = hi - 1;
+            for (int k = lt; k <= gt; k++) {
+                if (greater(lo, k)) {
+                    swap(k, lt++);
+                } else if (greater(k, hi)) {
+                    while (k < gt && greater(gt, hi)) {
+                        gt--;
+                    }
+                    swap(k, gt--);
+                    if (greater(lo, k)) {
+                        swap(k, lt++);
+                    }
+                }
+            }
+            lt--;
+            gt++;
+            swap(lo, lt);
+            swap(hi, gt);
+            mark(lo, lo, UNSORTED);
+            mark(hi, hi, UNSORTED);
+            mark(lt, lt, SORTED);
+            mark(gt, gt, SORTED);
+
+            if (top + 6 > stack.length) {
+                stack = grow(stack);
+            }
+            stack[top++] = gt + 1;
+            stack[top++] = hi;
+            // With equal pivots the middle part holds only copies of the pivot and is already in place
+            if (greater(gt, lt)) {
+                stack[top++] = lt + 1;
+                stack[top++] = gt - 1;
+            } else {
+                mark(lt, gt, SORTED);
+            }
+            stack[top++] = lo;
+            stack[top++] = lt - 1;
+        }
+        release(stack);
+        mark(0, n - 1, SORTED);
+    }
+
+    // Sorts the elements at five increasing indices with insertion sort
+    private void sortFive(int e1, int e2, int e3, int e4, int e5) {
+        int[] at = {e1, e2, e3, e4, e5};
+        for (int i = 1; i < at.length; i++) {
+            for (int j = i; j > 0 && greater(at[j - 1], at[j]); j--) {
+                swap(at[j - 1], at[j]);
+            }
+        }
+    }
+
+    // Quick sort with a median-of-three (or ninther) pivot and Dutch-flag 3-way partitioning, so runs of
+    // equal keys are finished in one pass. Small ranges are left to insertion sort, and a range that is still
+    // being partitioned after 2 log2 n levels is heap sorted, which bounds the worst case to O(n log n).
+    // The larger side is pushed and the smaller one processed next, so the stack holds at most log2 n ranges.
+    public void introSort(int[] array) {
+        a = array;
+        int n = a.length;
+        // lo, hi, remaining depth per range
+        int[] stack = allocate(3 * 32);
+        int top = 0;
+        if (n > 0) {
+            stack[top++] = 0;
+            stack[top++] = n - 1;
+            stack[top++] = 2 * (32 - Integer.numberOfLeadingZeros(n));
+        }
+        while (top > 0) {
+            int depth = stack[--top];
+            int hi = stack[--top];
+            int lo = stack[--top];
+            while (lo <= hi) {
+                if (hi - lo + 1 <= INTRO_INSERTION_CUTOFF) {
+                    phase("insertion sort");
+                    insertionRange(lo, hi);
+                    mark(lo, hi, SORTED);
+                    break;
+                }
+                if (depth == 0) {
+                    heapRange(lo, hi);
+                    mark(lo, hi, SORTED);
+                    break;
+                }
+                depth--;
+
+                phase("choose pivot");
+                int size = hi - lo + 1;
+                int pivot = size > NINTHER_THRESHOLD ? ninther(lo, hi) : medianOfThree(lo, lo + size / 2, hi);
+                if (pivot != lo) {
+                    swap(lo, pivot);
+                }
+                // a[lo..lt-1] < pivot, a[lt..i-1] == pivot, a[gt+1..hi] > pivot
+                phase("partition");
+                int lt = lo;
+                int gt = hi;
+                int i = lo + 1;
+                mark(lo, lo, SECONDARY);
+                while (i <= gt) {
+                    int c = compareValues(a[i], a[lt], i, lt);
+                    if (c < 0) {
+                        swap(lt, i);
+                        mark(lt, lt, UNSORTED);
+                        mark(i, i, SECONDARY);
+                        lt++;
+                        i++;
+                    } else if (c > 0) {
+                        swap(i, gt);
+                        gt--;
+                    } else {
+                        mark(i, i, SECONDARY);
+                        i++;
+                    }
+                }
+                mark(lt, gt, SORTED);
+
+                if (lt - lo < hi - gt) {
+                    stack[top++] = gt + 1;
+                    stack[top++] = hi;
+                    stack[top++] = depth;
+                    hi = lt - 1;
+                } else {
+                    stack[top++] = lo;
+                    stack[top++] = lt - 1;
+                    stack[top++] = depth;
+                    lo = gt + 1;
+                }
+            }
+        }
+        release(stack);
+        mark(0, n - 1, SORTED);
+    }
+
+    // Index of the median of a[i], a[j] and a[k]
+    private int medianOfThree(int i, int j, int k) {
+        if (greater(i, j)) {
+            int t = i;
+            i = j;
+            j = t;
+        }
+        if (greater(j, k)) {
+            return greater(i, k) ? i : k;
+        }
+        return j;
+    }
+
+    // Tukey's ninther: the median of the medians of three evenly spaced triples
+    private int ninther(int lo, int hi) {
+        int step = (hi - lo + 1) / 8;
+        int mid = lo + (hi - lo) / 2;
+        return medianOfThree(
+            medianOfThree(lo, lo + step, lo + 2 * step),
+            medianOfThree(mid - step, mid, mid + step),
+            medianOfThree(hi - 2 * step, hi - step, hi));
+    }
+
+    private void insertionRange(int lo, int hi) {
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && greater(j - 1, j); j--) {
+                swap(j - 1, j);
+            }
+        }
+    }
+
+    // In-place heap sort of a[lo..hi]; the range is shown in the first lane color while it is a heap
+    private void heapRange(int lo, int hi) {
+        int n = hi - lo + 1;
+        mark(lo, hi, LANE);
+        phase("build heap");
+        for (int root = n / 2 - 1; root >= 0; root--) {
+            siftDown(lo, root, n);
+        }
+        phase("sift down");
+        for (int end = n - 1; end > 0; end--) {
+            swap(lo, lo + end);
+            mark(lo + end, lo + end, SORTED);
+            siftDown(lo, 0, end);
+        }
+    }
+
+    // Restores the max-heap below root in the heap of the given size stored at a[base..]
+    private void siftDown(int base, int root, int size) {
+        while (2 * root + 1 < size) {
+            int child = 2 * root + 1;
+            if (child + 1 < size && greater(base + child + 1, base + child)) {
+                child++;
+            }
+            if (!greater(base + child, base + root)) {
+                return;
+            }
+            swap(base + root, base + child);
+            root = child;
+        }
+    }
+
+    // Fork/join merge sort on the common pool; see ParallelMergeSort
+    public void parallelMergeSort(int[] array) {
+        a = array;
+        ParallelMergeSort sorter = new ParallelMergeSort(listener);
+        phase("fork/join merge sort");
+        // The sorter's merge buffer is as long as the array
+        track(4L * array.length);
+        sorter.sort(array);
+        track(-4L * array.length);
+        comparisons += sorter.getComparisons();
+        writes += sorter.getWrites();
+        // The sorter counts no reads: every comparison loads two elements and every write one
+        reads += 2 * sorter.getComparisons() + sorter.getWrites();
+        bytesMoved += 4 * sorter.getWrites();
+    }
+
+    // The algorithm of ExternalSort on an array, as if only a run of n / EXTERNAL_RUNS elements fit in
+    // memory: every run is heap sorted in place and shown in its own lane color, then groups of up to
+    // EXTERNAL_FAN_IN runs are merged pass by pass through a min-heap of their heads until one run is left.
+    public void externalMergeSort(int[] array) {
+        a = array;
+        int n = a.length;
+        int run = Math.max(1, (n + EXTERNAL_RUNS - 1) / EXTERNAL_RUNS);
+        // Run and group bounds are computed in long, so arrays near Integer.MAX_VALUE cannot overflow them
+        for (int lo = 0; lo < n; lo = (int) Math.min(n, (long) lo + run)) {
+            int hi = (int) Math.min(n, (long) lo + run) - 1;
+            heapRange(lo, hi);
+            mark(lo, hi, (byte) (LANE + (lo / run) % LANES));
+        }
+        int[] temp = allocate(n);
+        int[] heap = allocate(EXTERNAL_FAN_IN);
+        int[] next = allocate(EXTERNAL_FAN_IN);
+        int[] end = allocate(EXTERNAL_FAN_IN);
+        int pass = 0;
+        for (long width = run; width < n; width *= EXTERNAL_FAN_IN) {
+            phase("merge pass " + ++pass);
+            boolean last = width * EXTERNAL_FAN_IN >= n;
+            int group = 0;
+            int hi;
+            for (int lo = 0; lo < n; lo = hi, group++) {
+                hi = (int) Math.min(n, lo + width * EXTERNAL_FAN_IN);
+                copyToTemp(temp, lo, hi - lo);
+                int size = 0;
+                for (int from = lo; from < hi; from = (int) Math.min(hi, from + width)) {
+                    next[size] = from;
+                    end[size] = (int) Math.min(hi, from + width);
+                    heap[size] = size;
+                    size++;
+                }
+                for (int root = size / 2 - 1; root >= 0; root--) {
+                    siftDownRuns(heap, root, size, temp, next);
+                }
+                byte state = last ? SORTED : (byte) (LANE + group % LANES);
+                for (int k = lo; k < hi; k++) {
+                    int r = heap[0];
+                    write(k, load(temp, next[r]++));
+                    mark(k, k, state);
+                    if (next[r] == end[r]) {
+                        heap[0] = heap[--size];
+                    }
+                    siftDownRuns(heap, 0, size, temp, next);
+                }
+            }
+        }
+        release(temp);
+        release(heap);
+        release(next);
+        release(end);
+        mark(0, n - 1, SORTED);
+    }
+
+    // Restores the min-heap of runs below root, ordered by the head value temp[next[run]] of each run
+    private void siftDownRuns(int[] heap, int root, int size, int[] temp, int[] next) {
+        while (2 * root + 1 < size) {
+            int child = 2 * root + 1;
+            int c = next[heap[child]];
+            if (child + 1 < size) {
+                int right = next[heap[child + 1]];
+                if (compareValues(temp[right], temp[c], right, c) < 0) {
+                    child++;
+                    c = right;
+                }
+            }
+            int r = next[heap[root]];
+            if (compareValues(temp[c], temp[r], c, r) >= 0) {
+                return;
+            }
+            int swapped = heap[root];
+            heap[root] = heap[child];
+            heap[child] = swapped;
+            root = child;
+        }
+    }
+
+    // Byte-wise LSD radix sort. Each pass reads every element to count its digit (histogram), turns the
+    // counts into bucket starts (prefix sums, shown by coloring each bucket's target range) and scatters a
+    // copy of the array back in digit order. Passes in which all elements share one digit are skipped.
+    public void lsdRadixSort(int[] array) {
+        a = array;
+        int n = a.length;
+        int[] temp = allocate(n);
+        int[] count = allocate(RADIX + 1);
+        for (int shift = 0; shift < 32; shift += RADIX_BITS) {
+            phase("histogram");
+            Arrays.fill(count, 0);
+            for (int i = 0; i < n; i++) {
+                count[digit(read(i), shift) + 1]++;
+            }
+            if (isSingleBucket(count, n)) {
+                continue;
+            }
+            phase("prefix sums");
+            for (int d = 0; d < RADIX; d++) {
+                count[d + 1] += count[d];
+            }
+            markBuckets(0, count, RADIX);
+            phase("scatter");
+            copyToTemp(temp, 0, n);
+            for (int i = 0; i < n; i++) {
+                int value = load(temp, i);
+                write(count[digit(value, shift)]++, value);
+            }
+        }
+        release(temp);
+        release(count);
+        mark(0, n - 1, SORTED);
+    }
+
+    // Byte-wise MSD radix sort: distributes a range by its top byte like one LSD pass, then sorts every
+    // bucket by the next byte. Buckets of MSD_INSERTION_CUTOFF elements or fewer go to insertion sort.
+    public void msdRadixSort(int[] array) {
+        a = array;
+        int n = a.length;
+        int[] temp = allocate(n);
+        int[] count = allocate(RADIX + 1);
+        // lo, hi, shift per range
+        int[] stack = allocate(3 * RADIX);
+        int top = 0;
+        if (n > 0) {
+            stack[top++] = 0;
+            stack[top++] = n - 1;
+            stack[top++] = 32 - RADIX_BITS;
+        }
+        while (top > 0) {
+            int shift = stack[--top];
+            int hi = stack[--top];
+            int lo = stack[--top];
+            int size = hi - lo + 1;
+            if (size <= MSD_INSERTION_CUTOFF) {
+                phase("insertion sort");
+                insertionRange(lo, hi);
+                mark(lo, hi, SORTED);
+                continue;
+            }
+
+            phase("histogram");
+            Arrays.fill(count, 0);
+            for (int i = lo; i <= hi; i++) {
+                count[digit(read(i), shift) + 1]++;
+            }
+            boolean single = isSingleBucket(count, size);
+            phase("prefix sums");
+            for (int d = 0; d < RADIX; d++) {
+                count[d + 1] += count[d];
+            }
+            if (!single) {
+                markBuckets(lo, count, RADIX);
+                phase("scatter");
+                copyToTemp(temp, lo, size);
+                for (int i = lo; i <= hi; i++) {
+                    int value = load(temp, i);
+                    write(lo + count[digit(value, shift)]++, value);
+                }
+            } else {
+                // Nothing moves; every bucket ends where the next one starts
+                System.arraycopy(count, 1, count, 0, RADIX);
+            }
+
+            // Bucket d now spans [lo + count[d - 1], lo + count[d])
+            if (top + 3 * RADIX > stack.length) {
+                stack = grow(stack);
+            }
+            for (int d = 0; d < RADIX; d++) {
+                int from = lo + (d == 0 ? 0 : count[d - 1]);
+                int to = lo + count[d] - 1;
+                if (shift == 0 || to - from < 1) {
+                    mark(from, to, SORTED);
+                } else {
+                    stack[top++] = from;
+                    stack[top++] = to;
+                    stack[top++] = shift - RADIX_BITS;
+                }
+            }
+        }
+        release(temp);
+        release(count);
+        release(stack);
+        mark(0, n - 1, SORTED);
+    }
+
+    // Counting sort over the key range [min, max]: one pass finds the range, one counts every key, the counts
+    // become bucket starts and a copy of the array is scattered back. Stable and O(n + k) for k keys.
+    public void countingSort(int[] array) {
+        a = array;
+        int n = a.length;
+        if (n == 0) {
+            return;
+        }
+        phase("find range");
+        int min = read(0);
+        int max = min;
+        for (int i = 1; i < n; i++) {
+            int value = read(i);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        long range = (long) max - min + 1;
+        if (range > COUNTING_MAX_RANGE) {
+            lsdRadixSort(array);
+            return;
+        }
+
+        int keys = (int) range;
+        int[] count = allocate(keys + 1);
+        phase("histogram");
+        for (int i = 0; i < n; i++) {
+            count[read(i) - min + 1]++;
+        }
+        phase("prefix sums");
+        for (int k = 0; k < keys; k++) {
+            count[k + 1] += count[k];
+        }
+        markBuckets(0, count, keys);
+        phase("scatter");
+        int[] temp = allocate(n);
+        copyToTemp(temp, 0, n);
+        for (int i = 0; i < n; i++) {
+            int value = load(temp, i);
+            write(count[value - min]++, value);
+        }
+        release(temp);
+        release(count);
+        mark(0, n - 1, SORTED);
+    }
+
+    // The digit of value at shift; the sign bit is flipped in the top byte so negative values come first
+    private static int digit(int value, int shift) {
+        int d = (value >>> shift) & (RADIX - 1);
+        return shift == 32 - RADIX_BITS ? d ^ (RADIX >>> 1) : d;
+    }
+
+    // count[d + 1] holds the histogram of digit d; true when all size elements share a digit
+    private static boolean isSingleBucket(int[] count, int size) {
+        for (int d = 1; d < count.length; d++) {
+            if (count[d] == size) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Colors the target range of every bucket, given the bucket starts in count[0 .. buckets]
+    private void markBuckets(int lo, int[] count, int buckets) {
+        for (int d = 0; d < buckets; d++) {
+            mark(lo + count[d], lo + count[d + 1] - 1, (byte) (LANE + d % LANES));
+        }
+    }
+
+    // Counted operations on the array being sorted, for the algorithms here and for SortAlgorithm plugins
+    public boolean greater(int i, int j) {
+        comparisons++;
+        reads += 2;
+        if (listener != null) {
+            listener.compare(i, j);
+        }
+        return a[i] > a[j];
+    }
+
+    // Compares two values held outside the array; i and j are the positions they are reported at.
+    public int compareValues(int x, int y, int i, int j) {
+        comparisons++;
+        reads += 2;
+        if (listener != null) {
+            listener.compare(i, j);
+        }
+        return Integer.compare(x, y);
+    }
+
+    public void swap(int i, int j) {
+        int temp = a[i];
+        a[i] = a[j];
+        a[j] = temp;
+        swaps++;
+        bytesMoved += 8;
+        if (listener != null) {
+            listener.swap(i, j);
+        }
+    }
+
+    public int read(int index) {
+        reads++;
+        if (listener != null) {
+            listener.read(index);
+        }
+        return a[index];
+    }
+
+    private void copyToTemp(int[] temp, int from, int length) {
+        copyToTemp(temp, from, from, length);
+    }
+
+    private void copyToTemp(int[] temp, int from, int to, int length) {
+        System.arraycopy(a, from, temp, to, length);
+        reads += length;
+        bytesMoved += 4L * length;
+    }
+
+    // Counts loading an element that is about to be written elsewhere, from a scratch array or the array
+    // itself; listeners only see the write
+    private int load(int[] source, int index) {
+        reads++;
+        return source[index];
+    }
+
+    public void write(int index, int value) {
+        a[index] = value;
+        writes++;
+        bytesMoved += 4;
+        if (listener != null) {
+            listener.write(index, value);
+        }
+    }
+
+    public void mark(int from, int to, byte state) {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (listener != null && from <= to) {
+            listener.mark(from, to, state);
+        }
+    }
+
+    // Starts timing the named phase and ends the running one. Naming the phase that is already running
+    // costs nothing, so it can be called inside loops.
+    public void phase(String name) {
+        if (name.equals(phase)) {
+            return;
+        }
+        long now = System.nanoTime();
+        endPhase(now);
+        phase = name;
+        phaseStart = now;
+        if (recordPhases) {
+            phaseEvent = new SortEvents.SortPhase();
+            phaseEvent.begin();
+        }
+    }
+
+    private void endPhase(long now) {
+        if (phase != null) {
+            phaseNanos.merge(phase, now - phaseStart, Long::sum);
+            if (phaseEvent != null) {
+                phaseEvent.end();
+                if (phaseEvent.shouldCommit()) {
+                    phaseEvent.algorithm = algorithm;
+                    phaseEvent.phase = phase;
+                    phaseEvent.commit();
+                }
+            }
+            phaseEvent = null;
+            phase = null;
+        }
+    }
+
+    // Scratch arrays are allocated and released through the engine so that the auxiliary memory high-water
+    // mark is known
+    public int[] allocate(int length) {
+        track(4L * length);
+        return new int[length];
+    }
+
+    public void release(int[] array) {
+        track(-4L * array.length);
+    }
+
+    private void track(long bytes) {
+        auxBytes += bytes;
+        peakAuxBytes = Math.max(peakAuxBytes, auxBytes);
+    }
+
+    // Doubles a range stack
+    private int[] grow(int[] stack) {
+        int[] grown = allocate(stack.length * 2);
+        System.arraycopy(stack, 0, grown, 0, stack.length);
+        release(stack);
+        return grown;
+    }
+}
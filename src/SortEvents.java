@@ -0,0 +1,97 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+// Java Flight Recorder events of the engine and the animation. They cost next to nothing unless a recording
+// is running, e.g. java -XX:StartFlightRecording=filename=sort.jfr ..., and then sit on the same timeline
+// as JFR's own CPU samples, GC and JavaFX thread activity.
+public final class SortEvents {
+
+    private static final String CATEGORY = "Sorting Visualizer";
+
+    private SortEvents() {
+    }
+
+    // One SortEngine.sort() call, from start to end
+    @Name("sortvisualizer.SortRun")
+    @Label("Sort Run")
+    @Category({CATEGORY, "Engine"})
+    @StackTrace(false)
+    public static class SortRun extends Event {
+        @Label("Algorithm")
+        String algorithm;
+
+        @Label("Size")
+        int size;
+
+        @Label("Distribution")
+        String distribution;
+
+        @Label("Traced")
+        @Description("Whether the events went to a listener, which makes the run as slow as its consumer")
+        boolean traced;
+
+        @Label("Comparisons")
+        long comparisons;
+
+        @Label("Swaps")
+        long swaps;
+
+        @Label("Writes")
+        long writes;
+
+        @Label("Reads")
+        long reads;
+
+        @Label("Peak Aux Memory")
+        @DataAmount
+        long peakAuxBytes;
+    }
+
+    // One phase of a sort run; phases of quick sorts and radix sorts change once per partition or bucket,
+    // so only the ones taking at least the threshold are recorded by default
+    @Name("sortvisualizer.SortPhase")
+    @Label("Sort Phase")
+    @Category({CATEGORY, "Engine"})
+    @StackTrace(false)
+    @Threshold("1 ms")
+    public static class SortPhase extends Event {
+        @Label("Algorithm")
+        String algorithm;
+
+        @Label("Phase")
+        String phase;
+    }
+
+    // One animation tick: replaying steps into the bar state and drawing the changes
+    @Name("sortvisualizer.Frame")
+    @Label("Animation Frame")
+    @Category({CATEGORY, "Rendering"})
+    @StackTrace(false)
+    public static class Frame extends Event {
+        @Label("Mode")
+        String mode;
+
+        @Label("View")
+        String view;
+
+        @Label("Steps")
+        @Description("Compare, swap, write and read steps replayed in this frame")
+        int steps;
+
+        @Label("Replay Time")
+        @Timespan
+        long replayNanos;
+
+        @Label("Render Time")
+        @Description("Time to push the changed elements into the view; JavaFX lays out and paints the scene afterwards")
+        @Timespan
+        long renderNanos;
+    }
+}
@@ -0,0 +1,15 @@
+// Receives the primitive steps performed by SortEngine. Indices always refer to positions in the sorted array.
+public interface SortListener {
+
+    void compare(int i, int j);
+
+    void swap(int i, int j);
+
+    void write(int index, int value);
+
+    // Inspects an element without comparing it, e.g. to count its key in a radix or counting sort.
+    void read(int index);
+
+    // Assigns a display state (see SortEngine.UNSORTED etc.) to every index in [from, to].
+    void mark(int from, int to, byte state);
+}
@@ -0,0 +1,103 @@
+import java.util.Arrays;
+
+// Compact in-memory log of SortEngine events.
+// Every event starts with one word holding the opcode in the top 4 bits and the first index in the rest,
+// followed by one argument word (none for READ, two for MARK: the end index and the state).
+public class SortTrace implements SortListener {
+
+    public static final int COMPARE = 0;
+    public static final int SWAP = 1;
+    public static final int WRITE = 2;
+    public static final int MARK = 3;
+    public static final int READ = 4;
+
+    private static final int OP_SHIFT = 28;
+    private static final int INDEX_MASK = (1 << OP_SHIFT) - 1;
+
+    private int[] data = new int[1024];
+    private int length = 0;
+    private int events = 0;
+
+    @Override
+    public void compare(int i, int j) {
+        append(COMPARE, i, j);
+    }
+
+    @Override
+    public void swap(int i, int j) {
+        append(SWAP, i, j);
+    }
+
+    @Override
+    public void write(int index, int value) {
+        append(WRITE, index, value);
+    }
+
+    @Override
+    public void read(int index) {
+        ensureCapacity(1);
+        data[length++] = (READ << OP_SHIFT) | index;
+        events++;
+    }
+
+    @Override
+    public void mark(int from, int to, byte state) {
+        ensureCapacity(3);
+        data[length++] = (MARK << OP_SHIFT) | from;
+        data[length++] = to;
+        data[length++] = state;
+        events++;
+    }
+
+    private void append(int op, int first, int second) {
+        ensureCapacity(2);
+        data[length++] = (op << OP_SHIFT) | first;
+        data[length++] = second;
+        events++;
+    }
+
+    private void ensureCapacity(int words) {
+        if (length + words > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + words));
+        }
+    }
+
+    // Number of recorded events
+    public int size() {
+        return events;
+    }
+
+    // Number of encoded words; positions passed to the accessors below range over [0, length())
+    public int length() {
+        return length;
+    }
+
+    public int op(int position) {
+        return data[position] >>> OP_SHIFT;
+    }
+
+    // Dispatches the event at position to the listener and returns the position of the next event.
+    public int replay(int position, SortListener listener) {
+        int word = data[position];
+        int first = word & INDEX_MASK;
+        switch (word >>> OP_SHIFT) {
+            case COMPARE:
+                listener.compare(first, data[position + 1]);
+                return position + 2;
+            case SWAP:
+                listener.swap(first, data[position + 1]);
+                return position + 2;
+            case WRITE:
+                listener.write(first, data[position + 1]);
+                return position + 2;
+            case MARK:
+                listener.mark(first, data[position + 1], (byte) data[position + 2]);
+                return position + 3;
+            case READ:
+                listener.read(first);
+                return position + 1;
+            default:
+                throw new IllegalStateException("Corrupt trace at position " + position);
+        }
+    }
+}
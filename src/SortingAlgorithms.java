@@ -1,93 +1,119 @@
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
-import javafx.scene.text.Text;
 import javafx.util.Duration;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.file.Path;
 
 public class SortingAlgorithms {
     
-    private ArrayList<Rectangle> rects;
-    private ArrayList<Text> labels;
+    private BarState bars;
+    private BarView view;
     private Timeline timeline;
     private int timelineDuration;
-    private int comparisons = 0;
-    private int swaps = 0;
-    private byte state = 0;
-    private int i = 0;
-    private int j = 0;
-    
-    // Merge sort specific variables
-    private int[] mergeSortArray;
-    private int[] tempArray;
-    private int[] originalArray; // Track original positions to count actual moves
-    private int currentSize;
-    private int leftStart;
-    private int mergeState;
-    private int rightStart;
-    private int mergeIndex;
-    private int leftIndex;
-    private int rightIndex;
-    private int maxSize;
-    
-    // Quick sort specific variables
-    private int[] quickSortArray;
-    private int quickSortState = 0;
-    private ArrayList<int[]> quickSortStack = new ArrayList<>();
-    private int pivotIndex = 0;
-    private int partitionLeft = 0, partitionRight = 0;
-    private int partitionI = 0, partitionJ = 0;
-    private boolean partitioningInProgress = false;
-    
-    private final int W = 15;
-    private static final int BASE_DURATION_MS = 200;
+    private long comparisons = 0;
+    private long swaps = 0;
+    private long writes = 0;
+    private long reads = 0;
 
-    // Algorithm complexity data
-    private static final Map<String, String> ALGORITHM_COMPLEXITY = new HashMap<>();
-    static {
-        ALGORITHM_COMPLEXITY.put("Bubble Sort", "Time: O(n²), Space: O(1)");
-        ALGORITHM_COMPLEXITY.put("Selection Sort", "Time: O(n²), Space: O(1)");
-        ALGORITHM_COMPLEXITY.put("Insertion Sort", "Time: O(n²), Space: O(1)");
-        ALGORITHM_COMPLEXITY.put("Merge Sort", "Time: O(n log n), Space: O(n)");
-        ALGORITHM_COMPLEXITY.put("Quick Sort", "Time: O(n log n), Space: O(log n)");
-    }
+    // Events are replayed from source: the live stream of a running sort or a recorded trace
+    private StepSource source;
+    private TraceStream stream;
+    private TraceFile.Reader trace;
+    private TraceIndex checkpoints;
+    private TraceIndex.Replay seekState;
+    private Path recordTo;
+    private String distribution;
+    // Receives the counters after every tick, seek and step
+    private MetricsChannel channel;
+
+    // Throughput mode: many steps per frame, only the resulting state is drawn
+    private boolean throughputMode = false;
+    private double targetSeconds = 0;
+    private long deadline;
+    private long lastFrame;
+    private double frameNanos = FRAME_NANOS;
+    private double nanosPerStep = 0;
+
+    private static final int BASE_DURATION_MS = 200;
+    private static final double FRAME_NANOS = 1e9 / 60;
+    // Share of a frame that replaying steps may take in throughput mode, leaving the rest for rendering
+    private static final double STEP_BUDGET_NANOS = FRAME_NANOS * 0.6;
 
     public static String getComplexity(String algorithm) {
-        return ALGORITHM_COMPLEXITY.getOrDefault(algorithm, "");
+        SortAlgorithm sortAlgorithm = AlgorithmRegistry.get(algorithm);
+        return sortAlgorithm != null ? sortAlgorithm.getComplexity() : "";
     }
     
-    public int getComparisons() {
+    public long getComparisons() {
         return comparisons;
     }
     
-    public int getSwaps() {
+    public long getSwaps() {
         return swaps;
     }
 
+    public long getWrites() {
+        return writes;
+    }
+
+    public long getReads() {
+        return reads;
+    }
+
+    // Counters, aux memory and phase times of the engine, known once a live run has been replayed to the
+    // end; null otherwise
+    public SortMetrics getMetrics() {
+        return stream != null && source == stream && stream.isFinished() ? stream.getMetrics() : null;
+    }
+
+    // The engine's sorted array once a live run has finished, without a copy; null otherwise
+    public int[] getSortedValues() {
+        return stream != null && source == stream ? stream.getSortedValues() : null;
+    }
+
     public void resetPerformanceCounters() {
         comparisons = 0;
         swaps = 0;
+        writes = 0;
+        reads = 0;
     }
     
-    public SortingAlgorithms(ArrayList<Rectangle> rects, ArrayList<Text> labels, int timelineDuration) {
-        this.rects = rects;
-        this.labels = labels;
+    public SortingAlgorithms(BarState bars, BarView view, int timelineDuration) {
+        this.bars = bars;
+        this.view = view;
         this.timelineDuration = timelineDuration;
     }
     
+    // Decouples algorithm steps from frames. With a positive target the number of steps per frame adapts so
+    // the run completes in about targetSeconds; otherwise as many steps run as fit the frame budget.
+    public void setThroughputMode(boolean enabled, double targetSeconds) {
+        this.throughputMode = enabled;
+        this.targetSeconds = targetSeconds;
+    }
+
+    // Records the next sort started by this instance to a trace file
+    public void setRecordTo(Path path) {
+        this.recordTo = path;
+    }
+
+    public void setMetricsChannel(MetricsChannel channel) {
+        this.channel = channel;
+    }
+
+    // Describes the input of the next sort in the JFR events
+    public void setDistribution(String distribution) {
+        this.distribution = distribution;
+    }
+
     public void updateSpeed(int newDuration) {
         this.timelineDuration = newDuration;
-        if (timeline != null) {
+        if (timeline != null && !throughputMode) {
             double newRate = (double) BASE_DURATION_MS / newDuration;
             timeline.setRate(newRate);
         }
     }
     
     private void setInitialTimelineRate() {
-        if (timeline != null) {
+        if (timeline != null && !throughputMode) {
             double initialRate = (double) BASE_DURATION_MS / timelineDuration;
             timeline.setRate(initialRate);
         }
@@ -98,513 +124,220 @@ public class SortingAlgorithms {
         if (timeline != null) {
             timeline.stop();
         }
+        if (stream != null) {
+            stream.cancel();
+        }
     }
     
     public Timeline getTimeline() {
         return timeline;
     }
     
-    public Timeline bubbleSort() {
+    // Runs the algorithm on a primitive copy of the bar values in the background and replays its events,
+    // one step per tick or, in throughput mode, as many steps per frame as the target requires. algorithm is
+    // any name SortEngine.sort accepts.
+    public Timeline sort(String algorithm) {
         resetState();
-        timeline = new Timeline(new KeyFrame(Duration.millis(BASE_DURATION_MS), e -> {
-            int arraySize = rects.size();
-            switch (state) {
-                case 0:
-                    i = 0;
-                    j = 0;
-                    state = 1;
-                    break;
-                case 1:
-                    if (i >= arraySize - 1) {
-                        state = 3;
-                        break;
-                    }
-                    for (int k = 0; k < arraySize - i; k++) {
-                        rects.get(k).setFill(Color.RED);
-                    }
-                    if (j < arraySize - 1) {
-                        rects.get(j).setFill(Color.BLUE);
-                        rects.get(j + 1).setFill(Color.BLUE);
-                    }
-                    if (j < arraySize - i - 1 && rects.get(j).getHeight() > rects.get(j + 1).getHeight()) {
-                        comparisons++;
-                        state = 2;
-                    } else {
-                        if (j < arraySize - i - 1) {
-                            comparisons++;
-                        }
-                        j++;
-                        if (j >= arraySize - i - 1) {
-                            rects.get(arraySize - i - 1).setFill(Color.GREEN);
-                            i++;
-                            j = 0;
-                        }
-                    }
-                    break;
-                case 2:
-                    swap(j, j + 1);
-                    j++;
-                    if (j >= arraySize - i - 1) {
-                        rects.get(arraySize - i - 1).setFill(Color.GREEN);
-                        i++;
-                        j = 0;
-                    }
-                    state = 1;
-                    break;
-                case 3:
-                    for (int k = 0; k < arraySize; k++) {
-                        rects.get(k).setFill(Color.GREEN);
-                    }
-                    timeline.stop();
-                    return;
-            }
-        }));
-        timeline.setCycleCount(Timeline.INDEFINITE);
-        setInitialTimelineRate();
-        return timeline;
+        int[] values = new int[bars.size()];
+        for (int k = 0; k < values.length; k++) {
+            values[k] = bars.getValue(k);
+        }
+        bars.clearStates();
+        view.render();
+
+        stream = new TraceStream(algorithm, values, throughputMode && targetSeconds > 0);
+        if (recordTo != null) {
+            stream.recordTo(recordTo);
+        }
+        stream.setDistribution(distribution);
+        stream.start();
+        source = stream;
+        return createTimeline();
     }
-    
-    
-    public Timeline selectionSort() {
+
+    // Replays a recorded trace into the bars, which must have been created from reader.readInitialValues().
+    // The returned timeline can be paused and resumed; stepOnce() and seek() work while it is paused.
+    public Timeline replay(TraceFile.Reader reader) {
         resetState();
-        timeline = new Timeline(new KeyFrame(Duration.millis(BASE_DURATION_MS), e -> {
-            int arraySize = rects.size();
-            switch (state) {
-                case 0:
-                    i = 0;
-                    j = i + 1;
-                    state = 1;
-                    break;
-                case 1:
-                    if (i >= arraySize - 1) {
-                        state = 3;
-                        break;
-                    }
-                    for (int k = 0; k < arraySize; k++) {
-                        if (k < i) {
-                            rects.get(k).setFill(Color.GREEN);
-                        } else {
-                            rects.get(k).setFill(Color.RED);
-                        }
-                    }
-                    if (j < arraySize) {
-                        rects.get(i).setFill(Color.BLUE);
-                        rects.get(j).setFill(Color.BLUE);
-                        if (rects.get(j).getHeight() < rects.get(i).getHeight()) {
-                            comparisons++;
-                            rects.get(j).setFill(Color.ORCHID);
-                            int temp = i;
-                            i = j;
-                            j = temp;
-                            state = 2;
-                        } else {
-                            comparisons++;
-                            j++;
-                            if (j >= arraySize) {
-                                rects.get(i).setFill(Color.GREEN);
-                                i++;
-                                j = i + 1;
-                                if (j >= arraySize) {
-                                    state = 3;
-                                }
-                            }
-                        }
-                    }
-                    break;
-                case 2:
-                    swap(i, j);
-                    int temp = i;
-                    i = j;
-                    j = temp;
-                    j++;
-                    if (j >= arraySize) {
-                        rects.get(i).setFill(Color.GREEN);
-                        i++;
-                        j = i + 1;
-                        if (j >= arraySize) {
-                            state = 3;
-                        }
-                    }
-                    state = 1;
-                    break;
-                case 3:
-                    for (int k = 0; k < arraySize; k++) {
-                        rects.get(k).setFill(Color.GREEN);
-                    }
-                    timeline.stop();
-                    return;
-            }
-        }));
-        timeline.setCycleCount(Timeline.INDEFINITE);
-        setInitialTimelineRate();
-        return timeline;
+        reader.rewind();
+        trace = reader;
+        source = reader;
+        bars.clearStates();
+        view.render();
+        return createTimeline();
     }
-    
-    public Timeline insertionSort() {
-        resetState();
-        timeline = new Timeline(new KeyFrame(Duration.millis(BASE_DURATION_MS), e -> {
-            int arraySize = rects.size();
-            switch (state) {
-                case 0:
-                    i = 1;
-                    j = i;
-                    state = 1;
-                    for (int k = 0; k < arraySize; k++) {
-                        if (k < 1) {
-                            rects.get(k).setFill(Color.GREEN);
-                        } else {
-                            rects.get(k).setFill(Color.RED);
-                        }
-                    }
-                    break;
-                case 1:
-                    if (i >= arraySize) {
-                        state = 3;
-                        break;
-                    }
-                    for (int k = 0; k < arraySize; k++) {
-                        if (k < i) {
-                            rects.get(k).setFill(Color.GREEN);
-                        } else {
-                            rects.get(k).setFill(Color.RED);
-                        }
-                    }
-                    rects.get(i).setFill(Color.BLUE);
-                    j = i;
-                    state = 2;
-                    break;
-                case 2:
-                    for (int k = 0; k < i; k++) {
-                        if (k != j && k != j-1) {
-                            rects.get(k).setFill(Color.GREEN);
-                        }
-                    }
-                    rects.get(j).setFill(Color.BLUE);
-                    if (j > 0) {
-                        rects.get(j-1).setFill(Color.ORCHID);
-                    }
-                    if (j > 0 && rects.get(j - 1).getHeight() > rects.get(j).getHeight()) {
-                        comparisons++;
-                        swap(j, j - 1);
-                        j--;
-                    } else {
-                        if (j > 0) {
-                            comparisons++;
-                        }
-                        for (int k = 0; k <= i; k++) {
-                            rects.get(k).setFill(Color.GREEN);
-                        }
-                        i++;
-                        state = 1;
-                        if (i >= arraySize) {
-                            state = 3;
-                        }
-                    }
-                    break;
-                case 3:
-                    for (int k = 0; k < arraySize; k++) {
-                        rects.get(k).setFill(Color.GREEN);
-                    }
-                    timeline.stop();
-                    return;
-            }
-        }));
+
+    private Timeline createTimeline() {
+        if (throughputMode) {
+            lastFrame = System.nanoTime();
+            deadline = lastFrame + (long) (targetSeconds * 1e9);
+            timeline = new Timeline(new KeyFrame(Duration.millis(1000.0 / 60), e -> frame()));
+        } else {
+            timeline = new Timeline(new KeyFrame(Duration.millis(BASE_DURATION_MS), e -> step()));
+        }
         timeline.setCycleCount(Timeline.INDEFINITE);
         setInitialTimelineRate();
         return timeline;
     }
-    
-    public Timeline mergeSort() {
-        int arraySize = rects.size();
-        
-        if (arraySize <= 1) {
-            if (arraySize == 1) {
-                rects.get(0).setFill(Color.GREEN);
-            }
-            return null;
-        }
-        
-        resetPerformanceCounters();
-        
-        mergeSortArray = new int[arraySize];
-        tempArray = new int[arraySize];
-        originalArray = new int[arraySize]; // Store original array for comparison
-        for (int i = 0; i < arraySize; i++) {
-            mergeSortArray[i] = (int)rects.get(i).getHeight();
-            originalArray[i] = (int)rects.get(i).getHeight(); // Keep original for comparison
-            rects.get(i).setFill(Color.RED);
+
+    // Applies pending marks and the next compare/swap/write event, then redraws the bars that changed.
+    private void step() {
+        SortEvents.Frame event = new SortEvents.Frame();
+        event.begin();
+        bars.clearHighlight();
+        long start = System.nanoTime();
+        int done = source.replay(renderer, 1);
+        long replayed = System.nanoTime();
+        view.render();
+        commitFrame(event, "step", done, replayed - start, System.nanoTime() - replayed);
+        publishCounters();
+        if (source.isFinished()) {
+            timeline.stop();
         }
-        
-        mergeState = 0;
-        currentSize = 1;
-        leftStart = 0;
-        maxSize = arraySize;
-        
-        timeline = new Timeline(new KeyFrame(Duration.millis(BASE_DURATION_MS), e -> {
-            switch (mergeState) {
-                case 0:
-                    if (currentSize >= maxSize) {
-                        mergeState = 4;
-                        break;
-                    }
-                    
-                    leftStart = 0;
-                    mergeState = 1;
-                    break;
-                    
-                case 1: 
-                    if (leftStart >= maxSize - 1) {
-                        currentSize = currentSize * 2;
-                        mergeState = 0;
-                        break;
-                    }
-                    
-                    // Calculate boundaries for this merge operation
-                    rightStart = Math.min(leftStart + currentSize, maxSize);
-                    int end = Math.min(leftStart + 2 * currentSize - 1, maxSize - 1);
-                    leftIndex = leftStart;
-                    rightIndex = rightStart;
-                    mergeIndex = leftStart;
-                    
-                    for (int i = 0; i < maxSize; i++) {
-                        if (i >= leftStart && i < rightStart) {
-                            rects.get(i).setFill(Color.BLUE);
-                        } else if (i >= rightStart && i <= end) {
-                            rects.get(i).setFill(Color.ORCHID);
-                        } else {
-                            rects.get(i).setFill(Color.RED);
-                        }
-                    }
-                    for (int i = leftStart; i <= end; i++) {
-                        tempArray[i] = mergeSortArray[i];
-                    }
-                    
-                    mergeState = 2;
-                    break;
-                    
-                case 2:
-                    int rightEnd = Math.min(leftStart + 2 * currentSize - 1, maxSize - 1);
-                    
-                    // If we still have elements to merge
-                    if (mergeIndex <= rightEnd) {
-                        if (leftIndex < rightStart && 
-                           (rightIndex > rightEnd || tempArray[leftIndex] <= tempArray[rightIndex])) {
-                            comparisons++;
-                            mergeSortArray[mergeIndex] = tempArray[leftIndex];
-                            rects.get(mergeIndex).setHeight(tempArray[leftIndex]);
-                            updateLabelPosition(mergeIndex);
-                            if (originalArray[mergeIndex] != tempArray[leftIndex]) {
-                                swaps++;
-                            }
-                            leftIndex++;
-                        } else {
-                            if (rightIndex <= rightEnd) {
-                                comparisons++;
-                            }
-                            mergeSortArray[mergeIndex] = tempArray[rightIndex];
-                            rects.get(mergeIndex).setHeight(tempArray[rightIndex]);
-                            updateLabelPosition(mergeIndex);
-                            if (originalArray[mergeIndex] != tempArray[rightIndex]) {
-                                swaps++; // Count only actual position changes
-                            }
-                            rightIndex++;
-                        }
-                        
-                        // Mark sorted element
-                        rects.get(mergeIndex).setFill(Color.GREEN);
-                        mergeIndex++;
-                    } else {
-                        // This merge is complete, move to next subarray pair
-                        leftStart = leftStart + 2 * currentSize;
-                        mergeState = 1;
-                    }
-                    break;
-                    
-                case 4:
-                    // Verify the array is sorted
-                    boolean sorted = true;
-                    for (int i = 1; i < maxSize; i++) {
-                        if (mergeSortArray[i - 1] > mergeSortArray[i]) {
-                            sorted = false;
-                            break;
-                        }
-                    }
-                    
-                    if (sorted) {
-                        for (int i = 0; i < maxSize; i++) {
-                            rects.get(i).setFill(Color.GREEN);
-                        }
-                        timeline.stop();
-                    } else {
-                        // Reset to a smaller subarray size to ensure we get there
-                        currentSize = maxSize / 4;
-                        if (currentSize < 1) currentSize = 1;
-                        mergeState = 0;
-                    }
-                    break;
-            }
-        }));
-        
-        timeline.setCycleCount(Timeline.INDEFINITE);
-        setInitialTimelineRate(); // Apply the correct speed from the start
-        return timeline;
     }
-    
-    public Timeline quickSort() {
-        int arraySize = rects.size();
-        resetPerformanceCounters();
-        quickSortArray = new int[arraySize];
-        quickSortStack.clear();
-        quickSortState = 0;
-        partitioningInProgress = false;
-        for (int k = 0; k < arraySize; k++) {
-            rects.get(k).setFill(Color.RED);
-            quickSortArray[k] = (int) rects.get(k).getHeight();
+
+    // Advances a paused replay by a single step
+    public void stepOnce() {
+        if (source != null && !source.isFinished()) {
+            step();
         }
-        
-        // Add initial range (full array)
-        quickSortStack.add(new int[]{0, arraySize - 1});
-        
-        timeline = new Timeline(new KeyFrame(Duration.millis(BASE_DURATION_MS), e -> {
-            switch (quickSortState) {
-                case 0: // Get next subarray to partition
-                    if (quickSortStack.isEmpty()) {
-                        quickSortState = 3; // Done
-                        break;
-                    }
-                    
-                    // Get next range to process
-                    int[] range = quickSortStack.remove(0);
-                    partitionLeft = range[0];
-                    partitionRight = range[1];
-                    
-                    // If the range is invalid or contains one element, it's already sorted
-                    if (partitionLeft >= partitionRight) {
-                        if (partitionLeft == partitionRight) {
-                            rects.get(partitionLeft).setFill(Color.GREEN);
-                        }
-                        break;
-                    }
-                    for (int k = 0; k < arraySize; k++) {
-                        if (k >= partitionLeft && k <= partitionRight) {
-                            rects.get(k).setFill(Color.RED);
-                        } else {
-                            rects.get(k).setFill(Color.GREEN);
-                        }
-                    }
-                    pivotIndex = partitionRight;
-                    rects.get(pivotIndex).setFill(Color.ORCHID);
-                    partitionI = partitionLeft - 1;
-                    partitionJ = partitionLeft;
-                    partitioningInProgress = true;
-                    
-                    quickSortState = 1; // Move to partitioning
-                    break;
-                    
-                case 1:
-                    if (!partitioningInProgress || partitionJ >= partitionRight) {
-                        partitionI++;
-                        swapQuickSort(partitionI, pivotIndex);
-                        rects.get(partitionI).setFill(Color.GREEN);
-                        // Add left and right subarrays to stack
-                        if (partitionI - 1 > partitionLeft) {
-                            quickSortStack.add(new int[]{partitionLeft, partitionI - 1});
-                        }
-                        if (partitionI + 1 < partitionRight) {
-                            quickSortStack.add(new int[]{partitionI + 1, partitionRight});
-                        }
-                        
-                        quickSortState = 0; // Get next range
-                        break;
-                    }
-                    for (int k = partitionLeft; k <= partitionRight; k++) {
-                        if (k == partitionJ) {
-                            rects.get(k).setFill(Color.BLUE);
-                        } else if (k == pivotIndex) {
-                            rects.get(k).setFill(Color.ORCHID);
-                        } else if (k >= partitionLeft && k <= partitionRight) {
-                            rects.get(k).setFill(Color.RED);
-                        }
-                    }
-                    
-                    // Compare current element with pivot
-                    if (quickSortArray[partitionJ] < quickSortArray[pivotIndex]) {
-                        comparisons++;
-                        partitionI++;
-                        swapQuickSort(partitionI, partitionJ);
-                    } else {
-                        comparisons++;
-                    }
-                    partitionJ++;
-                    break;
-                    
-                case 3:
-                    boolean sorted = true;
-                    for (int k = 1; k < arraySize; k++) {
-                        if (quickSortArray[k - 1] > quickSortArray[k]) {
-                            sorted = false;
-                            break;
-                        }
-                    }
-                    
-                    if (sorted) {
-                        for (int k = 0; k < arraySize; k++) {
-                            rects.get(k).setFill(Color.GREEN);
-                        }
-                        timeline.stop();
-                    }
-                    break;
-            }
-        }));
-        
-        timeline.setCycleCount(Timeline.INDEFINITE);
-        setInitialTimelineRate(); // Apply the correct speed from the start
-        return timeline;
     }
 
-    private void swap(int index1, int index2) {
-        if (index1 < 0 || index1 >= rects.size() || index2 < 0 || index2 >= rects.size()) {
+    // Compare/swap/write/read steps replayed so far
+    public long getPosition() {
+        return comparisons + swaps + writes + reads;
+    }
+
+    public long getTotalSteps() {
+        return source == null ? -1 : source.getTotalSteps();
+    }
+
+    // Enables checkpointed seeking in the current trace
+    public void setCheckpoints(TraceIndex checkpoints) {
+        this.checkpoints = checkpoints;
+        publishCounters();
+    }
+
+    public boolean hasCheckpoints() {
+        return checkpoints != null;
+    }
+
+    // Jumps to the state after the given number of steps of a recorded trace. The state is rebuilt in plain
+    // arrays, from the nearest checkpoint if there are any and from the start otherwise, and drawn once.
+    public void seek(long step) {
+        if (trace == null) {
             return;
         }
-        Rectangle rect1 = rects.get(index1);
-        Rectangle rect2 = rects.get(index2);
-        double tempHeight = rect1.getHeight();
-        rect1.setHeight(rect2.getHeight());
-        rect2.setHeight(tempHeight);
-        updateLabelPosition(index1);
-        updateLabelPosition(index2);
-        swaps++;
+        if (seekState == null) {
+            seekState = new TraceIndex.Replay(new int[trace.size()]);
+        }
+        if (checkpoints != null) {
+            checkpoints.seek(trace, step, seekState);
+        } else {
+            seekState.rewind(trace);
+            seekState.replayTo(trace, step);
+        }
+        comparisons = seekState.getComparisons();
+        swaps = seekState.getSwaps();
+        writes = seekState.getWrites();
+        reads = seekState.getReads();
+        bars.load(seekState.getValues(), seekState.getStates());
+        view.render();
+        publishCounters();
     }
-    
-    private void swapQuickSort(int index1, int index2) {
-        if (index1 < 0 || index1 >= quickSortArray.length || index2 < 0 || index2 >= quickSortArray.length) {
-            return;
+
+    // Throughput mode: replays K steps, then draws the resulting state once.
+    private void frame() {
+        long now = System.nanoTime();
+        frameNanos = 0.9 * frameNanos + 0.1 * (now - lastFrame);
+        lastFrame = now;
+
+        int steps = stepsForFrame(now);
+        SortEvents.Frame event = new SortEvents.Frame();
+        event.begin();
+        bars.clearHighlight();
+        long start = System.nanoTime();
+        int done = source.replay(renderer, steps);
+        long replayed = System.nanoTime();
+        if (done > 0) {
+            double perStep = (double) (replayed - start) / done;
+            nanosPerStep = nanosPerStep == 0 ? perStep : 0.8 * nanosPerStep + 0.2 * perStep;
+        }
+        view.render();
+        commitFrame(event, "throughput", done, replayed - start, System.nanoTime() - replayed);
+        publishCounters();
+        if (source.isFinished()) {
+            timeline.stop();
         }
-        int temp = quickSortArray[index1];
-        quickSortArray[index1] = quickSortArray[index2];
-        quickSortArray[index2] = temp;
-        rects.get(index1).setHeight(quickSortArray[index1]);
-        rects.get(index2).setHeight(quickSortArray[index2]);
-        updateLabelPosition(index1);
-        updateLabelPosition(index2);
-        swaps++;
     }
-    
-    private void updateLabelPosition(int index) {
-        if (index < 0 || index >= rects.size() || index >= labels.size()) {
-            return;
+
+    private void publishCounters() {
+        if (channel != null) {
+            channel.publish(new MetricsChannel.Snapshot(comparisons, swaps, writes, reads, checkpoints != null,
+                getMetrics()));
         }
-        Rectangle rect = rects.get(index);
-        Text label = labels.get(index);
-        label.setText(String.valueOf((int)rect.getHeight()));
-        label.setX(rect.getX() + W / 2 - label.getBoundsInLocal().getWidth() / 2);
-        label.setY(rect.getY() - 5);
     }
-    
+
+    private void commitFrame(SortEvents.Frame event, String mode, int steps, long replayNanos, long renderNanos) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.mode = mode;
+            event.view = view.getClass().getSimpleName();
+            event.steps = steps;
+            event.replayNanos = replayNanos;
+            event.renderNanos = renderNanos;
+            event.commit();
+        }
+    }
+
+    // K for the next frame: enough to finish by the deadline, but never more than fits the step budget.
+    private int stepsForFrame(long now) {
+        double budget = nanosPerStep > 0 ? STEP_BUDGET_NANOS / nanosPerStep : 1000;
+        double wanted = budget;
+        long total = source.getTotalSteps();
+        if (targetSeconds > 0 && total >= 0) {
+            long remaining = total - getPosition();
+            double framesLeft = Math.max(1, (deadline - now) / frameNanos);
+            wanted = Math.ceil(remaining / framesLeft);
+        }
+        return (int) Math.max(1, Math.min(Math.min(wanted, budget), Integer.MAX_VALUE));
+    }
+
+    // Applies trace events to the bar state
+    private final SortListener renderer = new SortListener() {
+        @Override
+        public void compare(int i, int j) {
+            comparisons++;
+            bars.highlight(i, j);
+        }
+
+        @Override
+        public void swap(int i, int j) {
+            bars.swap(i, j);
+            swaps++;
+        }
+
+        @Override
+        public void write(int index, int value) {
+            bars.setValue(index, value);
+            writes++;
+        }
+
+        @Override
+        public void read(int index) {
+            reads++;
+            bars.highlight(index, index);
+        }
+
+        @Override
+        public void mark(int from, int to, byte state) {
+            bars.setState(from, to, state);
+        }
+    };
+
     private void resetState() {
-        state = 0;
-        i = 0;
-        j = 0;
+        nanosPerStep = 0;
+        frameNanos = FRAME_NANOS;
         resetPerformanceCounters();
     }
 }
@@ -0,0 +1,12 @@
+// A source of sort events that SortingAlgorithms can replay: a live engine run or a recorded trace file.
+public interface StepSource {
+
+    // Applies events to target until maxSteps compare/swap/write/read steps were replayed or no more events are
+    // available yet. Marks are applied for free. Returns the number of steps replayed.
+    int replay(SortListener target, int maxSteps);
+
+    boolean isFinished();
+
+    // Number of compare/swap/write/read steps in the whole run, or -1 while it is not known yet
+    long getTotalSteps();
+}
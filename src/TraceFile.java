@@ -0,0 +1,356 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Binary sort trace files, written and read through memory-mapped I/O.
+//
+// Layout (little-endian):
+//   int magic "STRC", int version, int n, int reserved, long events, long steps, long end of data,
+//   short name length + UTF-8 algorithm name, n int32 initial values, then the events.
+// Each event is one byte holding the opcode in the low three bits (and the state of a MARK in the
+// remaining bits) followed by zigzag varints: indices are stored as deltas to the previous event's
+// first index, the second index of COMPARE/SWAP relative to the first, WRITE values relative to the
+// previous written value and the end of a MARK as its length. READ has no further arguments.
+public class TraceFile {
+
+    public static final String EXTENSION = ".strace";
+
+    private static final int MAGIC = 0x43525453;
+    private static final int VERSION = 2;
+    private static final int OP_BITS = 3;
+    private static final int EVENTS_OFFSET = 16;
+    private static final int NAME_OFFSET = 40;
+    // Readers map files in segments of this size, so traces may grow beyond 2 GB
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    // Writers map the file window by window as it grows
+    private static final long WINDOW_SIZE = 1L << 23;
+    private static final int MAX_EVENT_BYTES = 32;
+
+    private TraceFile() {
+    }
+
+    // Records engine events to a file. Not thread-safe; wrap it like any other listener when needed.
+    public static class Writer implements SortListener, Closeable {
+
+        private final FileChannel channel;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long events = 0;
+        private long steps = 0;
+        private int lastIndex = 0;
+        private int lastValue = 0;
+
+        public Writer(Path path, String algorithm, int[] initialValues) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            map(0);
+            byte[] name = algorithm.getBytes(StandardCharsets.UTF_8);
+            window.putInt(MAGIC).putInt(VERSION).putInt(initialValues.length).putInt(0)
+                .putLong(0).putLong(0).putLong(0);
+            window.putShort((short) name.length).put(name);
+            for (int value : initialValues) {
+                ensure(4);
+                window.putInt(value);
+            }
+        }
+
+        private void map(long position) throws IOException {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_WRITE, position, WINDOW_SIZE);
+            window.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private void ensure(int bytes) {
+            if (window.remaining() < bytes) {
+                try {
+                    map(windowStart + window.position());
+                } catch (IOException e) {
+                    throw new IllegalStateException("Cannot extend trace file", e);
+                }
+            }
+        }
+
+        @Override
+        public void compare(int i, int j) {
+            pair(SortTrace.COMPARE, i, j);
+        }
+
+        @Override
+        public void swap(int i, int j) {
+            pair(SortTrace.SWAP, i, j);
+        }
+
+        private void pair(int op, int i, int j) {
+            ensure(MAX_EVENT_BYTES);
+            window.put((byte) op);
+            putSigned(i - lastIndex);
+            putSigned(j - i);
+            lastIndex = i;
+            events++;
+            steps++;
+        }
+
+        @Override
+        public void write(int index, int value) {
+            ensure(MAX_EVENT_BYTES);
+            window.put((byte) SortTrace.WRITE);
+            putSigned(index - lastIndex);
+            putSigned(value - lastValue);
+            lastIndex = index;
+            lastValue = value;
+            events++;
+            steps++;
+        }
+
+        @Override
+        public void mark(int from, int to, byte state) {
+            ensure(MAX_EVENT_BYTES);
+            window.put((byte) (SortTrace.MARK | state << OP_BITS));
+            putSigned(from - lastIndex);
+            putUnsigned(to - from);
+            lastIndex = from;
+            events++;
+        }
+
+        @Override
+        public void read(int index) {
+            ensure(MAX_EVENT_BYTES);
+            window.put((byte) SortTrace.READ);
+            putSigned(index - lastIndex);
+            lastIndex = index;
+            events++;
+            steps++;
+        }
+
+        private void putSigned(int value) {
+            putUnsigned((value << 1) ^ (value >> 31));
+        }
+
+        private void putUnsigned(int value) {
+            while ((value & ~0x7F) != 0) {
+                window.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            window.put((byte) value);
+        }
+
+        // Writes the event counts and the end of the data into the header and trims the file to its contents
+        @Override
+        public void close() throws IOException {
+            long size = windowStart + window.position();
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, NAME_OFFSET);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(EVENTS_OFFSET, events);
+            header.putLong(EVENTS_OFFSET + 8, steps);
+            header.putLong(EVENTS_OFFSET + 16, size);
+            header.force();
+            window.force();
+            window = null;
+            try {
+                channel.truncate(size);
+            } catch (IOException e) {
+                // Some platforms refuse to shrink a file that is still mapped; readers stop after the recorded events
+            }
+            channel.close();
+        }
+    }
+
+    // Decoder state at an event boundary
+    public static class Cursor {
+        private final long position;
+        private final long eventsRead;
+        private final long stepsRead;
+        private final int lastIndex;
+        private final int lastValue;
+
+        private Cursor(long position, long eventsRead, long stepsRead, int lastIndex, int lastValue) {
+            this.position = position;
+            this.eventsRead = eventsRead;
+            this.stepsRead = stepsRead;
+            this.lastIndex = lastIndex;
+            this.lastValue = lastValue;
+        }
+    }
+
+    // Replays a trace file directly from the mapped pages. Events are decoded on the fly, nothing is copied.
+    public static class Reader implements StepSource, Closeable {
+
+        private final FileChannel channel;
+        private final MappedByteBuffer[] segments;
+        private final String algorithm;
+        private final int size;
+        private final long events;
+        private final long steps;
+        private final long valuesOffset;
+        private final long eventsOffset;
+
+        private long position;
+        private long eventsRead;
+        private long stepsRead;
+        private int lastIndex;
+        private int lastValue;
+
+        public Reader(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            long end = channel.size();
+            segments = new MappedByteBuffer[(int) ((end + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+            for (int k = 0; k < segments.length; k++) {
+                long start = (long) k << SEGMENT_BITS;
+                segments[k] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, end - start));
+                segments[k].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            if (end < NAME_OFFSET + 2 || readInt(0) != MAGIC) {
+                channel.close();
+                throw new IOException(path + " is not a sort trace");
+            }
+            if (readInt(4) != VERSION) {
+                channel.close();
+                throw new IOException("Unsupported trace version " + readInt(4));
+            }
+            size = readInt(8);
+            events = readLong(EVENTS_OFFSET);
+            steps = readLong(EVENTS_OFFSET + 8);
+            int nameLength = (readByte(NAME_OFFSET) & 0xFF) | (readByte(NAME_OFFSET + 1) & 0xFF) << 8;
+            byte[] name = new byte[nameLength];
+            for (int k = 0; k < nameLength; k++) {
+                name[k] = readByte(NAME_OFFSET + 2 + k);
+            }
+            algorithm = new String(name, StandardCharsets.UTF_8);
+            valuesOffset = NAME_OFFSET + 2 + nameLength;
+            eventsOffset = valuesOffset + 4L * size;
+            rewind();
+        }
+
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long getEvents() {
+            return events;
+        }
+
+        @Override
+        public long getTotalSteps() {
+            return steps;
+        }
+
+        // Steps replayed since the last rewind
+        public long getPosition() {
+            return stepsRead;
+        }
+
+        // Remembers the current read position; readers of the same file can restore it
+        public Cursor getCursor() {
+            return new Cursor(position, eventsRead, stepsRead, lastIndex, lastValue);
+        }
+
+        public void restore(Cursor cursor) {
+            position = cursor.position;
+            eventsRead = cursor.eventsRead;
+            stepsRead = cursor.stepsRead;
+            lastIndex = cursor.lastIndex;
+            lastValue = cursor.lastValue;
+        }
+
+        public int[] readInitialValues() {
+            int[] values = new int[size];
+            for (int k = 0; k < size; k++) {
+                values[k] = readInt(valuesOffset + 4L * k);
+            }
+            return values;
+        }
+
+        public void rewind() {
+            position = eventsOffset;
+            eventsRead = 0;
+            stepsRead = 0;
+            lastIndex = 0;
+            lastValue = 0;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return eventsRead >= events;
+        }
+
+        @Override
+        public int replay(SortListener target, int maxSteps) {
+            int replayed = 0;
+            while (replayed < maxSteps && eventsRead < events) {
+                int head = readByte(position++) & 0xFF;
+                int op = head & ((1 << OP_BITS) - 1);
+                int first = lastIndex + getSigned();
+                lastIndex = first;
+                switch (op) {
+                    case SortTrace.COMPARE:
+                        target.compare(first, first + getSigned());
+                        break;
+                    case SortTrace.SWAP:
+                        target.swap(first, first + getSigned());
+                        break;
+                    case SortTrace.WRITE:
+                        lastValue += getSigned();
+                        target.write(first, lastValue);
+                        break;
+                    case SortTrace.READ:
+                        target.read(first);
+                        break;
+                    default:
+                        target.mark(first, first + getUnsigned(), (byte) (head >>> OP_BITS));
+                        break;
+                }
+                eventsRead++;
+                if (op != SortTrace.MARK) {
+                    replayed++;
+                }
+            }
+            stepsRead += replayed;
+            return replayed;
+        }
+
+        private int getSigned() {
+            int value = getUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private int getUnsigned() {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = readByte(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private byte readByte(long at) {
+            return segments[(int) (at >>> SEGMENT_BITS)].get((int) (at & (SEGMENT_SIZE - 1)));
+        }
+
+        private int readInt(long at) {
+            return (readByte(at) & 0xFF) | (readByte(at + 1) & 0xFF) << 8
+                | (readByte(at + 2) & 0xFF) << 16 | (readByte(at + 3) & 0xFF) << 24;
+        }
+
+        private long readLong(long at) {
+            return (readInt(at) & 0xFFFFFFFFL) | (long) readInt(at + 4) << 32;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
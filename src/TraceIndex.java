@@ -0,0 +1,235 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+// Checkpoints of a recorded trace for fast seeking. Every interval steps the decoder position is saved
+// together with the array: every KEYFRAME_EVERY-th checkpoint as a full copy, the ones in between as the
+// sparse delta of the values and states that changed since the previous checkpoint (or as a full copy too
+// when that delta would be larger). Reaching any step costs one keyframe copy, at most KEYFRAME_EVERY - 1
+// deltas and fewer than interval replayed steps. The interval is widened for long traces so that the
+// checkpoints stay within MAX_BYTES even if every one of them were a full copy.
+public class TraceIndex {
+
+    private static final int KEYFRAME_EVERY = 16;
+    private static final long MAX_BYTES = 256L << 20;
+
+    private final int interval;
+    private final List<Checkpoint> checkpoints = new ArrayList<>();
+
+    private TraceIndex(int interval) {
+        this.interval = interval;
+    }
+
+    // Scans the whole trace once with its own reader. Throws CancellationException when the thread is
+    // interrupted, so a build can be abandoned when another trace is opened.
+    public static TraceIndex build(TraceFile.Reader reader, int interval) {
+        // A full copy takes 5 bytes per element
+        long limit = Math.max(KEYFRAME_EVERY, MAX_BYTES / Math.max(1, 5L * reader.size()));
+        long widened = Math.max(interval, (reader.getTotalSteps() + limit - 1) / limit);
+        TraceIndex index = new TraceIndex((int) Math.min(Integer.MAX_VALUE, widened));
+        Replay state = new Replay(reader.readInitialValues());
+        reader.rewind();
+        index.add(reader, state);
+        while (!reader.isFinished()) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException();
+            }
+            reader.replay(state, index.interval);
+            index.add(reader, state);
+        }
+        return index;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public int size() {
+        return checkpoints.size();
+    }
+
+    private void add(TraceFile.Reader reader, Replay state) {
+        Checkpoint checkpoint = new Checkpoint(reader.getCursor(), state.comparisons, state.swaps, state.writes,
+            state.reads);
+        // A delta entry takes 9 bytes against 5 per element for a copy
+        if (checkpoints.size() % KEYFRAME_EVERY == 0 || state.changedCount * 2 > state.values.length) {
+            checkpoint.values = state.values.clone();
+            checkpoint.states = state.states.clone();
+        } else {
+            int count = state.changedCount;
+            checkpoint.indices = new int[count];
+            checkpoint.changedValues = new int[count];
+            checkpoint.changedStates = new byte[count];
+            for (int k = 0; k < count; k++) {
+                int index = state.changed[k];
+                checkpoint.indices[k] = index;
+                checkpoint.changedValues[k] = state.values[index];
+                checkpoint.changedStates[k] = state.states[index];
+            }
+        }
+        state.clearChanged();
+        checkpoints.add(checkpoint);
+    }
+
+    // Brings state to the array after the given step and leaves reader positioned right behind it
+    public void seek(TraceFile.Reader reader, long step, Replay state) {
+        int target = (int) Math.min(step / interval, checkpoints.size() - 1);
+        int keyframe = target;
+        while (checkpoints.get(keyframe).values == null) {
+            keyframe--;
+        }
+        Checkpoint base = checkpoints.get(keyframe);
+        System.arraycopy(base.values, 0, state.values, 0, state.values.length);
+        System.arraycopy(base.states, 0, state.states, 0, state.states.length);
+        for (int c = keyframe + 1; c <= target; c++) {
+            Checkpoint delta = checkpoints.get(c);
+            for (int k = 0; k < delta.indices.length; k++) {
+                state.values[delta.indices[k]] = delta.changedValues[k];
+                state.states[delta.indices[k]] = delta.changedStates[k];
+            }
+        }
+        Checkpoint checkpoint = checkpoints.get(target);
+        state.comparisons = checkpoint.comparisons;
+        state.swaps = checkpoint.swaps;
+        state.writes = checkpoint.writes;
+        state.reads = checkpoint.reads;
+        reader.restore(checkpoint.cursor);
+        state.replayTo(reader, step);
+    }
+
+    private static class Checkpoint {
+        private final TraceFile.Cursor cursor;
+        private final long comparisons;
+        private final long swaps;
+        private final long writes;
+        private final long reads;
+        // Keyframe
+        private int[] values;
+        private byte[] states;
+        // Delta to the previous checkpoint
+        private int[] indices;
+        private int[] changedValues;
+        private byte[] changedStates;
+
+        Checkpoint(TraceFile.Cursor cursor, long comparisons, long swaps, long writes, long reads) {
+            this.cursor = cursor;
+            this.comparisons = comparisons;
+            this.swaps = swaps;
+            this.writes = writes;
+            this.reads = reads;
+        }
+    }
+
+    // Applies trace events to plain arrays, for seeking without drawing every step. Remembers which indices
+    // changed since the last clearChanged().
+    public static class Replay implements SortListener {
+        private final int[] values;
+        private final byte[] states;
+        private final boolean[] isChanged;
+        private final int[] changed;
+        private int changedCount = 0;
+        private long comparisons = 0;
+        private long swaps = 0;
+        private long writes = 0;
+        private long reads = 0;
+
+        public Replay(int[] values) {
+            this.values = values;
+            this.states = new byte[values.length];
+            this.isChanged = new boolean[values.length];
+            this.changed = new int[values.length];
+        }
+
+        public int[] getValues() {
+            return values;
+        }
+
+        public byte[] getStates() {
+            return states;
+        }
+
+        public long getComparisons() {
+            return comparisons;
+        }
+
+        public long getSwaps() {
+            return swaps;
+        }
+
+        public long getWrites() {
+            return writes;
+        }
+
+        public long getReads() {
+            return reads;
+        }
+
+        // Replays the trace from the beginning, without checkpoints
+        public void rewind(TraceFile.Reader reader) {
+            int[] initial = reader.readInitialValues();
+            System.arraycopy(initial, 0, values, 0, values.length);
+            Arrays.fill(states, SortEngine.UNSORTED);
+            comparisons = 0;
+            swaps = 0;
+            writes = 0;
+            reads = 0;
+            reader.rewind();
+        }
+
+        public void replayTo(TraceFile.Reader reader, long step) {
+            while (reader.getPosition() < step && !reader.isFinished()) {
+                reader.replay(this, (int) Math.min(step - reader.getPosition(), Integer.MAX_VALUE));
+            }
+        }
+
+        @Override
+        public void compare(int i, int j) {
+            comparisons++;
+        }
+
+        @Override
+        public void swap(int i, int j) {
+            int temp = values[i];
+            values[i] = values[j];
+            values[j] = temp;
+            changed(i);
+            changed(j);
+            swaps++;
+        }
+
+        @Override
+        public void write(int index, int value) {
+            values[index] = value;
+            changed(index);
+            writes++;
+        }
+
+        @Override
+        public void read(int index) {
+            reads++;
+        }
+
+        @Override
+        public void mark(int from, int to, byte state) {
+            for (int k = from; k <= to; k++) {
+                states[k] = state;
+                changed(k);
+            }
+        }
+
+        private void changed(int index) {
+            if (!isChanged[index]) {
+                isChanged[index] = true;
+                changed[changedCount++] = index;
+            }
+        }
+
+        void clearChanged() {
+            for (int k = 0; k < changedCount; k++) {
+                isChanged[changed[k]] = false;
+            }
+            changedCount = 0;
+        }
+    }
+}
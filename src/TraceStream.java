@@ -0,0 +1,252 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+
+// Runs a SortEngine on a background thread and hands its events to the consumer in fixed-size SortTrace
+// chunks through a bounded queue. Memory stays bounded no matter how long the run is: the engine blocks
+// while the consumer is CHUNKS_AHEAD chunks behind.
+public class TraceStream implements StepSource {
+
+    private static final int CHUNK_WORDS = 1 << 16;
+    private static final int CHUNKS_AHEAD = 16;
+    private static final SortTrace END = new SortTrace();
+
+    private final String algorithm;
+    private final int[] values;
+    private final boolean countSteps;
+    private Path recordTo;
+    private String distribution;
+    private final BlockingQueue<SortTrace> queue = new ArrayBlockingQueue<>(CHUNKS_AHEAD);
+    private Thread thread;
+    private volatile boolean cancelled = false;
+    private volatile long totalSteps = -1;
+    private volatile Throwable failure;
+    private volatile SortMetrics metrics;
+
+    // Consumer side
+    private SortTrace chunk;
+    private int position = 0;
+    private boolean finished = false;
+
+    // values is sorted in place by the background thread. When countSteps is set the algorithm is first
+    // run once, only counting its steps, so that getTotalSteps() is known early.
+    public TraceStream(String algorithm, int[] values, boolean countSteps) {
+        this.algorithm = algorithm;
+        this.values = values;
+        this.countSteps = countSteps;
+    }
+
+    // Also writes every event to a trace file at path
+    public void recordTo(Path path) {
+        this.recordTo = path;
+    }
+
+    // Describes the input in the engine's JFR events
+    public void setDistribution(String distribution) {
+        this.distribution = distribution;
+    }
+
+    public void start() {
+        thread = new Thread(this::produce, "sort-engine");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void cancel() {
+        cancelled = true;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        queue.clear();
+    }
+
+    // The sorted array, or null until the run has finished
+    public int[] getSortedValues() {
+        return metrics != null ? values : null;
+    }
+
+    // Counters and phase times of the traced run, or null until it has finished
+    public SortMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public long getTotalSteps() {
+        return totalSteps;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    private void produce() {
+        Producer producer = new Producer();
+        try {
+            if (countSteps) {
+                // Counted from the events themselves: the engine's read metric also counts reads that are not
+                // replayed as steps, e.g. the two behind every comparison
+                StepCounter counter = new StepCounter();
+                SortEngine engine = new SortEngine(counter);
+                engine.setDistribution(distribution);
+                engine.sort(algorithm, values.clone());
+                totalSteps = counter.steps;
+            }
+            if (recordTo != null) {
+                producer.recorder = new TraceFile.Writer(recordTo, algorithm, values);
+            }
+            SortEngine engine = new SortEngine(producer);
+            engine.setDistribution(distribution);
+            engine.sort(algorithm, values);
+            metrics = engine.getMetrics();
+            producer.flush();
+            queue.put(END);
+        } catch (CancellationException | InterruptedException e) {
+            // Stopped by the consumer
+        } catch (IOException | RuntimeException | Error e) {
+            failure = e;
+            try {
+                queue.put(END);
+            } catch (InterruptedException ignored) {
+                // Stopped by the consumer
+            }
+        } finally {
+            if (producer.recorder != null) {
+                try {
+                    producer.recorder.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public int replay(SortListener target, int maxSteps) {
+        int steps = 0;
+        while (steps < maxSteps && !finished) {
+            if (chunk == null || position >= chunk.length()) {
+                chunk = queue.poll();
+                position = 0;
+                if (chunk == null) {
+                    break;
+                }
+                if (chunk == END) {
+                    finished = true;
+                    if (failure != null) {
+                        throw new IllegalStateException(algorithm + " failed", failure);
+                    }
+                    break;
+                }
+            }
+            if (chunk.op(position) != SortTrace.MARK) {
+                steps++;
+            }
+            position = chunk.replay(position, target);
+        }
+        return steps;
+    }
+
+    // Counts the events replay() counts as steps, i.e. all but marks
+    private static class StepCounter implements SortListener {
+        private long steps = 0;
+
+        @Override
+        public void compare(int i, int j) {
+            steps++;
+        }
+
+        @Override
+        public void swap(int i, int j) {
+            steps++;
+        }
+
+        @Override
+        public void write(int index, int value) {
+            steps++;
+        }
+
+        @Override
+        public void read(int index) {
+            steps++;
+        }
+
+        @Override
+        public void mark(int from, int to, byte state) {
+        }
+    }
+
+    // Collects engine events into chunks, and the optional recording, and blocks while the queue is full
+    private class Producer implements SortListener {
+        private SortTrace current = new SortTrace();
+        private TraceFile.Writer recorder;
+
+        @Override
+        public void compare(int i, int j) {
+            current.compare(i, j);
+            if (recorder != null) {
+                recorder.compare(i, j);
+            }
+            check();
+        }
+
+        @Override
+        public void swap(int i, int j) {
+            current.swap(i, j);
+            if (recorder != null) {
+                recorder.swap(i, j);
+            }
+            check();
+        }
+
+        @Override
+        public void write(int index, int value) {
+            current.write(index, value);
+            if (recorder != null) {
+                recorder.write(index, value);
+            }
+            check();
+        }
+
+        @Override
+        public void read(int index) {
+            current.read(index);
+            if (recorder != null) {
+                recorder.read(index);
+            }
+            check();
+        }
+
+        @Override
+        public void mark(int from, int to, byte state) {
+            current.mark(from, to, state);
+            if (recorder != null) {
+                recorder.mark(from, to, state);
+            }
+            check();
+        }
+
+        private void check() {
+            if (current.length() >= CHUNK_WORDS) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            if (current.size() == 0) {
+                return;
+            }
+            try {
+                queue.put(current);
+            } catch (InterruptedException e) {
+                throw new CancellationException();
+            }
+            current = new SortTrace();
+        }
+    }
+}